@@ -0,0 +1,511 @@
+package com.samgol.driver.bmp180;
+
+import java.io.IOException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import static java.util.concurrent.TimeUnit.MICROSECONDS;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+
+public class Bmp180 implements PressureSensor {
+    private static final Logger LOG = Logger.getLogger(Bmp180.class.getName());
+
+
+    public final static int BMP180_ADDRESS = 0x77;
+
+    public final static int BMP180_ULTRA_LOW_POWER = 0;
+    public final static int BMP180_STANDARD = 1;
+    public final static int BMP180_HIGH_RES = 2;
+    public final static int BMP180_ULTRA_HIGH_RES = 3;
+
+
+    private static final int modeDelay[] = {5, 8, 14, 26};
+    private static final int TEMPERATURE_DELAY_MS = 5;
+    // datasheet maximum conversion times, waited for precisely
+    private static final int conversionUs[] = {4500, 7500, 13500, 25500};
+    private static final int TEMPERATURE_CONVERSION_US = 4500;
+
+    static final float MAX_FREQ_HZ = 181f;
+    static final float MIN_FREQ_HZ = 23.1f;
+
+    static final float MAX_POWER_CONSUMPTION_TEMP_UA = 325f;
+    static final float MAX_POWER_CONSUMPTION_PRESSURE_UA = 720f;
+    static final float STANDBY_CURRENT_UA = 0.1f;
+
+    public static final float MIN_TEMP_C = -40f;
+    static final float MAX_TEMP_C = 85f;
+
+    static final float MAX_PRESSURE_HPA = 1100f;
+
+    private final static int CALIBRATION_READ_ATTEMPTS = 3;
+
+    final static int BMP180_CHIP_ID_REGISTER = 0xD0;
+    final static int BMP180_CHIP_ID = 0x55;
+
+    private final static int BMP180_CONTROL = 0xF4;
+    private final static int BMP180_TEMPERATURE_DATA = 0xF6;
+    private final static int BMP180_PRESSURE_DATA = 0xF6;
+    private final static int BMP180_READ_TEMPERATURE_CMD = 0x2E;
+    private final static int BMP180_READ_PRESSURE_CMD = 0x34;
+
+    private RegisterTransport mDevice;
+    private final Clock mClock;
+    private final CalibrationStore mCalibrationStore;
+    private final String mBusName;
+    private String mCalibrationKey;
+    private Bmp180Calibration mCalibration;
+    private Bmp180Compensation mCompensation;
+
+    private volatile int mode = BMP180_ULTRA_HIGH_RES;
+    private int rawPressureMode = BMP180_ULTRA_HIGH_RES;
+
+    private final LastRead lastRawTemp;
+    private final LastRead lastRawPressure;
+    private final LastRead lastPressure;
+    private final LastRead lastTemperature;
+
+
+    private volatile float standardSeaLevelPressure = 101500;
+    private volatile PressureSample latestSample;
+
+    private boolean conversionOpen;
+    private long conversionStartNanos;
+    private long busCompleteNanos;
+    private long compensatedNanos;
+
+    private int temperatureRefreshInterval = 1;
+    private int rawTempUses;
+    private long temperatureConversions;
+    private final long[] pressureConversions = new long[modeDelay.length];
+
+    /**
+     * Creates the driver on top of any register transport, e.g. the I2C binding of the Android
+     * module or a {@link ReplayTransport} driven by a {@link VirtualClock}.
+     *
+     * @param transport register access to the chip
+     * @param clock     time source for conversion waits and read caching
+     */
+    public Bmp180(RegisterTransport transport, Clock clock) {
+        this(transport, clock, null, null);
+    }
+
+    /**
+     * @param transport register access to the chip
+     * @param clock     time source for conversion waits and read caching
+     * @param store     where the calibration is kept between opens, may be null
+     * @param busName   name of the bus, part of the calibration key
+     */
+    public Bmp180(RegisterTransport transport, Clock clock, CalibrationStore store, String busName) {
+        mClock = clock;
+        lastRawTemp = new LastRead(clock);
+        lastRawPressure = new LastRead(clock);
+        lastPressure = new LastRead(clock);
+        lastTemperature = new LastRead(clock);
+        mDevice = transport;
+        mCalibrationStore = store;
+        mBusName = busName;
+        try {
+            loadCalibration();
+        } catch (Exception e) {
+            LOG.log(Level.SEVERE, "Bmp180 Error: ", e);
+        }
+    }
+
+    /**
+     * @param mode oversampling mode of the pressure conversions, one of the BMP180_* modes
+     */
+    public void setMode(int mode) {
+        this.mode = mode;
+    }
+
+    /**
+     * Sets how many pressure samples share one temperature conversion. The temperature changes
+     * slowly, so a larger interval saves a conversion per sample at the cost of compensation accuracy.
+     *
+     * @param pressureSamples number of pressure samples per temperature conversion, 1 converts both every time
+     */
+    public synchronized void setTemperatureRefreshInterval(int pressureSamples) {
+        if (pressureSamples < 1) {
+            throw new IllegalArgumentException("temperature refresh interval must be positive: " + pressureSamples);
+        }
+        this.temperatureRefreshInterval = pressureSamples;
+    }
+
+    /**
+     * @return number of temperature conversions since the driver was created
+     */
+    public synchronized long getTemperatureConversions() {
+        return temperatureConversions;
+    }
+
+    /**
+     * @param mode the oversampling mode
+     * @return number of pressure conversions in the given mode since the driver was created
+     */
+    public synchronized long getPressureConversions(int mode) {
+        return pressureConversions[mode];
+    }
+
+    static int conversionTimeMs(int mode) {
+        return modeDelay[mode];
+    }
+
+    static int temperatureConversionTimeMs() {
+        return TEMPERATURE_DELAY_MS;
+    }
+
+    private int readU16(int register) throws IOException {
+        return I2cUtils.readU16BE(mDevice, register);
+    }
+
+    /**
+     * Loads the calibration from the store when the chip was seen before, otherwise reads,
+     * validates and stores it. The key is the bus, the address and the chip id register.
+     */
+    private synchronized void loadCalibration() throws IOException {
+        if (mCalibrationStore != null) {
+            if (mCalibrationKey == null) {
+                int chipId = mDevice.readRegByte(BMP180_CHIP_ID_REGISTER);
+                mCalibrationKey = mBusName + "-0x" + Integer.toHexString(BMP180_ADDRESS) + "-0x" + Integer.toHexString(chipId);
+            }
+            Bmp180Calibration stored = mCalibrationStore.load(mCalibrationKey);
+            if (stored != null) {
+                applyCalibration(stored);
+                return;
+            }
+        }
+        applyCalibration(readCalibrationData());
+        if (mCalibrationStore != null) {
+            mCalibrationStore.save(mCalibrationKey, mCalibration);
+        }
+    }
+
+    /**
+     * Reads the calibration data from the IC in one burst, retrying reads that fail validation.
+     */
+    private Bmp180Calibration readCalibrationData() throws IOException {
+        IOException failure = null;
+        byte[] block = new byte[Bmp180Calibration.LENGTH];
+        for (int attempt = 0; attempt < CALIBRATION_READ_ATTEMPTS; attempt++) {
+            try {
+                mDevice.readRegBuffer(Bmp180Calibration.REGISTER, block, block.length);
+                return Bmp180Calibration.fromBlock(block);
+            } catch (IOException e) {
+                failure = e;
+            }
+        }
+        throw failure;
+    }
+
+    private void applyCalibration(Bmp180Calibration calibration) {
+        mCalibration = calibration;
+        mCompensation = new Bmp180Compensation(calibration);
+    }
+
+    /**
+     * Returns the calibration in use, to be published along with raw captures.
+     *
+     * @return the calibration, or null if it could not be read
+     */
+    public synchronized Bmp180Calibration getCalibration() {
+        return mCalibration;
+    }
+
+    private Bmp180Compensation compensation() throws IOException {
+        if (mCompensation == null) {
+            // loading failed when the driver was opened, the chip may answer by now
+            loadCalibration();
+        }
+        return mCompensation;
+    }
+
+    /**
+     * Re-reads the calibration from the chip and compares it with the one in use, typically from
+     * a background thread after the driver was opened from a stored calibration. A differing valid
+     * calibration replaces the one in use and the stored one.
+     *
+     * @return true if the chip calibration matches the one in use
+     * @throws IOException if there was communication problem or the chip returned invalid data
+     */
+    public synchronized boolean verifyCalibration() throws IOException {
+        Bmp180Calibration onChip = readCalibrationData();
+        if (onChip.equals(mCalibration)) {
+            return true;
+        }
+        LOG.warning("verifyCalibration: calibration changed, replacing it");
+        applyCalibration(onChip);
+        lastPressure.invalidate();
+        lastTemperature.invalidate();
+        if (mCalibrationStore != null && mCalibrationKey != null) {
+            mCalibrationStore.save(mCalibrationKey, onChip);
+        }
+        return false;
+    }
+
+    /**
+     * Reads the raw (uncompensated) temperature from the sensor
+     *
+     * @return Reads the raw (uncompensated) temperature from the sensor
+     * @throws IOException if there was communication problem
+     */
+    private int readRawTemp() throws IOException {
+
+        if (lastRawTemp.isValid() || (lastRawTemp.hasVal() && rawTempUses < temperatureRefreshInterval))
+            return lastRawTemp.val;
+
+        markConversionStart();
+        mDevice.writeRegByte(BMP180_CONTROL, (byte) BMP180_READ_TEMPERATURE_CMD);
+        waitMicros(TEMPERATURE_CONVERSION_US);
+        int raw = readU16(BMP180_TEMPERATURE_DATA);
+
+        temperatureConversions++;
+        rawTempUses = 0;
+        lastRawTemp.setVal(raw);
+        return raw;
+    }
+
+    /**
+     * Reads the raw (uncompensated) pressure level from the sensor
+     *
+     * @return the raw (uncompensated) pressure level from the sensor
+     * @throws IOException if there was communication problem
+     */
+    private int readRawPressure(boolean cached) throws IOException {
+
+        if (cached && lastRawPressure.isValid())
+            return lastRawPressure.val;
+
+        int mode = this.mode;
+        markConversionStart();
+        mDevice.writeRegByte(BMP180_CONTROL, (byte) (BMP180_READ_PRESSURE_CMD + (mode << 6)));
+        waitMicros(conversionUs[mode]);
+        int msb = mDevice.readRegByte(BMP180_PRESSURE_DATA);
+        int lsb = mDevice.readRegByte(BMP180_PRESSURE_DATA + 1);
+        int xlsb = mDevice.readRegByte(BMP180_PRESSURE_DATA + 2);
+        int raw = ((msb << 16) + (lsb << 8) + xlsb) >> (8 - mode);
+        busCompleteNanos = mClock.nanoTime();
+        rawPressureMode = mode;
+        pressureConversions[mode]++;
+        rawTempUses++;
+
+        lastRawPressure.setVal(raw);
+        return raw;
+    }
+
+    /**
+     * Returns the temperature in degrees Celsius.
+     *
+     * @return the temperature in degrees Celsius.
+     * @throws IOException if there was communication problem
+     */
+    @Override
+    public synchronized float readTemperature() throws IOException {
+        if (lastTemperature.isValid())
+            return lastTemperature.val / 10.0F;
+
+        try {
+            int UT = readRawTemp();
+            lastTemperature.setVal(Bmp180Compensation.temperatureTenths(compensation().b5(UT)));
+        } finally {
+            // a standalone temperature read must not leave its start time to the next sample
+            conversionOpen = false;
+        }
+
+        return lastTemperature.val / 10.0F;
+    }
+
+    /**
+     * Returns the pressure in Pascal.
+     *
+     * @return the pressure in Pascal.
+     * @throws IOException if there was communication problem
+     */
+    @Override
+    public int readPressure() throws IOException {
+        return readSample().getPressure();
+    }
+
+    /**
+     * Measures the pressure and temperature and publishes the result as the latest sample.
+     * Samples younger than the read cache period are returned without touching the bus.
+     *
+     * @return the measured sample
+     * @throws IOException if there was communication problem
+     */
+    @Override
+    public synchronized PressureSample readSample() throws IOException {
+        if (lastPressure.isValid() && latestSample != null)
+            return latestSample;
+        return convertSample(true);
+    }
+
+    /**
+     * Like {@link #readSample()}, but always converts the pressure, bypassing the read cache. The
+     * temperature is converted as set by {@link #setTemperatureRefreshInterval(int)}. Meant for
+     * back-to-back conversions like the {@link Variometer} runs.
+     *
+     * @return the measured sample
+     * @throws IOException if there was communication problem
+     */
+    public synchronized PressureSample readSampleNow() throws IOException {
+        return convertSample(false);
+    }
+
+    private PressureSample convertSample(boolean cached) throws IOException {
+        Bmp180Compensation compensation = compensation();
+        int UT;
+        int UP;
+        try {
+            UT = readRawTemp();
+            UP = readRawPressure(cached);
+        } finally {
+            conversionOpen = false;
+        }
+        int mode = rawPressureMode;
+
+        int B5 = compensation.b5(UT);
+        lastTemperature.setVal(Bmp180Compensation.temperatureTenths(B5));
+        int p = compensation.pressure(B5, UP, mode);
+
+        lastPressure.setVal(p);
+        compensatedNanos = mClock.nanoTime();
+
+        PressureSample sample = new PressureSample(p, lastTemperature.val, standardSeaLevelPressure, mode,
+                UT, UP, conversionStartNanos, busCompleteNanos, compensatedNanos);
+        latestSample = sample;
+        return sample;
+    }
+
+    /**
+     * Converts a sample and appends its raw readings to {@code buffer} without compensating it,
+     * for high rate capture where the consumer compensates later with {@link #getCalibration()}.
+     * Every call converts the pressure, the temperature is converted as set by
+     * {@link #setTemperatureRefreshInterval(int)}. The latest sample is not updated.
+     *
+     * @param buffer receives one row
+     * @throws IOException if there was communication problem
+     */
+    public synchronized void readRaw(RawSampleBuffer buffer) throws IOException {
+        if (buffer.isFull()) {
+            throw new IllegalStateException("raw sample buffer is full");
+        }
+        int UT;
+        int UP;
+        try {
+            UT = readRawTemp();
+            UP = readRawPressure(false);
+        } finally {
+            conversionOpen = false;
+        }
+        long startMillis = mClock.currentTimeMillis() - NANOSECONDS.toMillis(mClock.nanoTime() - conversionStartNanos);
+        buffer.add(startMillis, UT, UP, rawPressureMode);
+    }
+
+    /**
+     * Returns the last published sample without blocking and without bus access, so it is safe to
+     * call from any thread while a conversion is in progress.
+     *
+     * @return the latest sample, or null if no pressure was measured yet
+     */
+    @Override
+    public String getChipName() {
+        return "BMP180";
+    }
+
+    @Override
+    public PressureSample getLatestSample() {
+        return latestSample;
+    }
+
+    private void markConversionStart() {
+        if (!conversionOpen) {
+            conversionOpen = true;
+            conversionStartNanos = mClock.nanoTime();
+        }
+    }
+
+    /**
+     * Returns the barometric altitude above sea level in meters.
+     *
+     * @return the barometric altitude above sea level in meters.
+     * @throws IOException if there was communication problem
+     */
+    @Override
+    public float readAltitude() throws IOException {
+        return readSample().getAltitude(standardSeaLevelPressure);
+    }
+
+    /**
+     * Returns the array with: the pressure in Pascal,the temperature in degrees Celsius,the barometric altitude above sea level in meters
+     *
+     * @return the array with: the pressure in Pascal,the temperature in degrees Celsius,the barometric altitude above sea level in meters
+     * @throws IOException if there was communication problem
+     */
+    @Override
+    public float[] readAllValues() throws IOException {
+        PressureSample sample = readSample();
+        return new float[]{sample.getPressure(), sample.getTemperature(), sample.getAltitude(standardSeaLevelPressure)};
+    }
+
+    /**
+     * Set the standard sea level pressure for altitude calculation
+     *
+     * @param standardSeaLevelPressure the standard sea level pressure for your location
+     */
+    @Override
+    public void setStandardSeaLevelPressure(float standardSeaLevelPressure) {
+        this.standardSeaLevelPressure = standardSeaLevelPressure;
+    }
+
+    private void waitMicros(long howMuch) {
+        try {
+            mClock.sleep(MICROSECONDS.toNanos(howMuch));
+        } catch (InterruptedException e) {
+            LOG.log(Level.SEVERE, "waitMicros error: ", e);
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (mDevice != null) {
+            try {
+                mDevice.close();
+            } finally {
+                mDevice = null;
+            }
+        }
+    }
+}
+
+class LastRead {
+    private static final long MIN_PERIOD_NS = MILLISECONDS.toNanos(50);
+    private final Clock clock;
+    private boolean set;
+    long time;
+    int val;
+
+    LastRead(Clock clock) {
+        this.clock = clock;
+    }
+
+    boolean isValid() {
+        return set && clock.nanoTime() - time < MIN_PERIOD_NS;
+    }
+
+    boolean hasVal() {
+        return set;
+    }
+
+    void invalidate() {
+        set = false;
+    }
+
+    void setVal(int val) {
+        this.val = val;
+        set = true;
+        time = clock.nanoTime();
+    }
+
+}
\ No newline at end of file
@@ -0,0 +1,120 @@
+package com.samgol.driver.bmp180;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+
+/**
+ * Factory calibration block of a BMP180: the 11 big endian words AC1..MD at 0xAA..0xBF.
+ */
+public final class Bmp180Calibration {
+
+    static final int REGISTER = 0xAA;
+    static final int LENGTH = 22;
+    private static final int WORDS = LENGTH / 2;
+
+    private final byte[] block;
+
+    private Bmp180Calibration(byte[] block) {
+        this.block = block;
+    }
+
+    /**
+     * Validates a raw calibration block. None of the words may be 0x0000 or 0xFFFF, which is what a
+     * failed or floating bus read returns.
+     *
+     * @param block the 22 calibration bytes as read from the chip
+     * @return the calibration
+     * @throws IOException if the block is invalid
+     */
+    public static Bmp180Calibration fromBlock(byte[] block) throws IOException {
+        if (block == null || block.length != LENGTH) {
+            throw new IOException("Calibration block must be " + LENGTH + " bytes");
+        }
+        for (int i = 0; i < WORDS; i++) {
+            int word = u16(block, i * 2);
+            if (word == 0x0000 || word == 0xFFFF) {
+                throw new IOException("Invalid calibration word " + i + ": 0x" + Integer.toHexString(word));
+            }
+        }
+        return new Bmp180Calibration(Arrays.copyOf(block, LENGTH));
+    }
+
+    /**
+     * @return CRC32 of the calibration block
+     */
+    public long checksum() {
+        CRC32 crc = new CRC32();
+        crc.update(block, 0, LENGTH);
+        return crc.getValue();
+    }
+
+    /**
+     * @return copy of the raw calibration block
+     */
+    public byte[] toBlock() {
+        return Arrays.copyOf(block, LENGTH);
+    }
+
+    int ac1() {
+        return s16(0);
+    }
+
+    int ac2() {
+        return s16(2);
+    }
+
+    int ac3() {
+        return s16(4);
+    }
+
+    int ac4() {
+        return u16(block, 6);
+    }
+
+    int ac5() {
+        return u16(block, 8);
+    }
+
+    int ac6() {
+        return u16(block, 10);
+    }
+
+    int b1() {
+        return s16(12);
+    }
+
+    int b2() {
+        return s16(14);
+    }
+
+    int mb() {
+        return s16(16);
+    }
+
+    int mc() {
+        return s16(18);
+    }
+
+    int md() {
+        return s16(20);
+    }
+
+    private int s16(int offset) {
+        return (short) u16(block, offset);
+    }
+
+    private static int u16(byte[] block, int offset) {
+        return ((block[offset] & 0xFF) << 8) | (block[offset + 1] & 0xFF);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof Bmp180Calibration && Arrays.equals(block, ((Bmp180Calibration) o).block);
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(block);
+    }
+}
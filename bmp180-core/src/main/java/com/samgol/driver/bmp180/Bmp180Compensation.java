@@ -0,0 +1,128 @@
+package com.samgol.driver.bmp180;
+
+/**
+ * Datasheet fixed point compensation of raw BMP180 readings, for single samples and for whole
+ * columns of raw captures.
+ * <p>
+ * Kept apart from the driver so that raw UT/UP captured on the device can be turned into
+ * physical values later, anywhere the calibration block is known, with exactly the arithmetic
+ * the driver uses.
+ */
+public final class Bmp180Compensation {
+
+    private final Bmp180Calibration calibration;
+    private final int ac1;
+    private final int ac2;
+    private final int ac3;
+    private final int ac4;
+    private final int ac5;
+    private final int ac6;
+    private final int b1;
+    private final int b2;
+    private final int mc;
+    private final int md;
+
+    public Bmp180Compensation(Bmp180Calibration calibration) {
+        this.calibration = calibration;
+        ac1 = calibration.ac1();
+        ac2 = calibration.ac2();
+        ac3 = calibration.ac3();
+        ac4 = calibration.ac4();
+        ac5 = calibration.ac5();
+        ac6 = calibration.ac6();
+        b1 = calibration.b1();
+        b2 = calibration.b2();
+        mc = calibration.mc();
+        md = calibration.md();
+    }
+
+    public Bmp180Calibration getCalibration() {
+        return calibration;
+    }
+
+    /**
+     * @param ut raw temperature
+     * @return the intermediate B5 of the datasheet, shared by temperature and pressure
+     */
+    public int b5(int ut) {
+        int x1 = ((ut - ac6) * ac5) >> 15;
+        int x2 = (mc << 11) / (x1 + md);
+        return x1 + x2;
+    }
+
+    /**
+     * @param b5 see {@link #b5(int)}
+     * @return the temperature in tenths of a degree Celsius
+     */
+    public static int temperatureTenths(int b5) {
+        return (b5 + 8) >> 4;
+    }
+
+    /**
+     * @param b5   see {@link #b5(int)}
+     * @param up   raw pressure, scaled by the oversampling mode
+     * @param mode oversampling mode of the conversion
+     * @return the pressure in Pascal
+     */
+    public int pressure(int b5, int up, int mode) {
+        long p;
+        int b6 = b5 - 4000;
+        int x1 = (b2 * (b6 * b6) >> 12) >> 11;
+        int x2 = (ac2 * b6) >> 11;
+        int x3 = x1 + x2;
+        int b3 = (((ac1 * 4 + x3) << mode) + 2) / 4;
+
+        x1 = (ac3 * b6) >> 13;
+        x2 = (b1 * ((b6 * b6) >> 12)) >> 16;
+        x3 = ((x1 + x2) + 2) >> 2;
+        long b4 = (ac4 * (x3 + 32768)) >> 15;
+        long b7 = (up - b3) * (50000 >> mode);
+
+        // unsigned comparison of the datasheet. The Android driver before the core split compared
+        // against the int 0x80000000, always took the second branch and dropped the low bit of
+        // b7 / b4, reading up to 1 Pa low (69963 instead of 69964 Pa for the datasheet example)
+        if (b7 < 0x80000000L) {
+            p = (b7 * 2) / b4;
+        } else {
+            p = (b7 / b4) * 2;
+        }
+
+        x1 = (int) ((p >> 8) * (p >> 8));
+        x1 = (x1 * 3038) >> 16;
+        x2 = (int) (-7357 * p) >> 16;
+        p = p + ((x1 + x2 + 3791) >> 4);
+        return (int) p;
+    }
+
+    /**
+     * Compensates {@code count} raw samples stored column wise. B5 is only recomputed when the raw
+     * temperature changes, which with sparse temperature conversions is a fraction of the rows.
+     *
+     * @param ut                raw temperature column
+     * @param up                raw pressure column
+     * @param mode              oversampling mode column
+     * @param offset            first row to compensate
+     * @param count             number of rows
+     * @param pressure          receives the pressure in Pascal at the same rows
+     * @param temperatureTenths receives the temperature in tenths of a degree Celsius at the same rows, may be null
+     */
+    public void compensate(int[] ut, int[] up, byte[] mode, int offset, int count,
+                           int[] pressure, int[] temperatureTenths) {
+        int end = offset + count;
+        int lastUt = 0;
+        int b5 = 0;
+        boolean hasB5 = false;
+        for (int i = offset; i < end; i++) {
+            int rawTemperature = ut[i];
+            if (!hasB5 || rawTemperature != lastUt) {
+                b5 = b5(rawTemperature);
+                lastUt = rawTemperature;
+                hasB5 = true;
+            }
+            pressure[i] = pressure(b5, up[i], mode[i]);
+            if (temperatureTenths != null) {
+                temperatureTenths[i] = temperatureTenths(b5);
+            }
+        }
+    }
+}
@@ -0,0 +1,240 @@
+package com.samgol.driver.bmp180;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Picks the oversampling mode, sample interval and temperature refresh interval of a {@link Bmp180}
+ * so the modelled average supply current stays within a budget.
+ * <p>
+ * The model charges every conversion with its worst case current for its conversion time, plus the
+ * standby current in between. While the pressure is stable the sensor runs in
+ * {@link Bmp180#BMP180_ULTRA_LOW_POWER} at the slow interval with sparse temperature conversions;
+ * once the pressure starts changing it samples at the fast interval in the highest resolution the
+ * budget allows.
+ * <p>
+ * The change rate is the least squares slope over the last {@link #RATE_WINDOW_SLOW_INTERVALS} slow
+ * intervals, so conversion noise averages out instead of flipping the plan. The pressure starts
+ * changing above the enter threshold and is stable again only below the lower exit threshold.
+ */
+public class Bmp180PowerScheduler {
+
+    private static final int[] MODES_BY_RESOLUTION = {
+            Bmp180.BMP180_ULTRA_HIGH_RES, Bmp180.BMP180_HIGH_RES,
+            Bmp180.BMP180_STANDARD, Bmp180.BMP180_ULTRA_LOW_POWER};
+    private static final int STABLE_TEMPERATURE_REFRESH = 10;
+    private static final long MIN_INTERVAL_MS = (long) Math.ceil(1000 / Bmp180.MAX_FREQ_HZ);
+    private static final long MAX_INTERVAL_MS = TimeUnit.DAYS.toMillis(1);
+    /**
+     * Width of the rate regression window, in slow sample intervals.
+     */
+    public static final int RATE_WINDOW_SLOW_INTERVALS = 4;
+    private static final int MIN_RATE_SAMPLES = 3;
+
+    private final Bmp180 mSensor;
+    private final Clock mClock;
+    private final float mBudgetUa;
+    private final long mFastIntervalMs;
+    private final long mSlowIntervalMs;
+    private final long mStartNanos;
+    private final PressureTrend mTrend;
+
+    private float mEnterThresholdPaPerMin = 1f;
+    private float mExitThresholdPaPerMin = 0.5f;
+    private float mRatePaPerMin;
+    private boolean mChanging;
+
+    private int mMode;
+    private int mTemperatureRefresh;
+    private long mIntervalMs;
+
+    /**
+     * @param sensor         the sensor to drive, its mode and temperature refresh are set by the scheduler
+     * @param budgetUa       target average supply current in microamperes
+     * @param fastIntervalMs sample interval while the pressure is changing
+     * @param slowIntervalMs sample interval while the pressure is stable
+     */
+    public Bmp180PowerScheduler(Bmp180 sensor, float budgetUa, long fastIntervalMs, long slowIntervalMs) {
+        this(sensor, budgetUa, fastIntervalMs, slowIntervalMs, Clock.SYSTEM);
+    }
+
+    public Bmp180PowerScheduler(Bmp180 sensor, float budgetUa, long fastIntervalMs, long slowIntervalMs, Clock clock) {
+        mSensor = sensor;
+        mBudgetUa = budgetUa;
+        mFastIntervalMs = Math.max(MIN_INTERVAL_MS, fastIntervalMs);
+        mSlowIntervalMs = Math.max(mFastIntervalMs, slowIntervalMs);
+        mClock = clock;
+        mStartNanos = clock.nanoTime();
+        mTrend = new PressureTrend(RATE_WINDOW_SLOW_INTERVALS * mSlowIntervalMs, 16);
+        apply(false);
+    }
+
+    /**
+     * Converts a battery budget to an average current budget.
+     *
+     * @param capacityMah  usable battery capacity in mAh
+     * @param lifetimeDays required run time on that capacity
+     * @return average current budget in microamperes
+     */
+    public static float budgetFromBattery(float capacityMah, float lifetimeDays) {
+        return capacityMah * 1000f / (lifetimeDays * 24f);
+    }
+
+    /**
+     * Modelled charge of one sample.
+     *
+     * @param mode               oversampling mode of the pressure conversion
+     * @param temperatureRefresh pressure samples per temperature conversion
+     * @return charge in microampere milliseconds
+     */
+    public static float chargePerSample(int mode, int temperatureRefresh) {
+        float pressure = Bmp180.MAX_POWER_CONSUMPTION_PRESSURE_UA * Bmp180.conversionTimeMs(mode);
+        float temperature = Bmp180.MAX_POWER_CONSUMPTION_TEMP_UA * Bmp180.temperatureConversionTimeMs();
+        return pressure + temperature / temperatureRefresh;
+    }
+
+    /**
+     * Modelled average current when sampling continuously.
+     *
+     * @return average current in microamperes
+     */
+    public static float averageCurrent(int mode, int temperatureRefresh, long intervalMs) {
+        return Bmp180.STANDBY_CURRENT_UA + chargePerSample(mode, temperatureRefresh) / intervalMs;
+    }
+
+    /**
+     * @param enterPaPerMinute pressure change rate above which a stable pressure counts as changing,
+     *                         1 Pa/min by default
+     * @param exitPaPerMinute  rate below which a changing pressure counts as stable again, not above
+     *                         the enter threshold, 0.5 Pa/min by default
+     */
+    public synchronized void setChangeThresholds(float enterPaPerMinute, float exitPaPerMinute) {
+        if (exitPaPerMinute > enterPaPerMinute) {
+            throw new IllegalArgumentException("exit threshold " + exitPaPerMinute
+                    + " above enter threshold " + enterPaPerMinute);
+        }
+        mEnterThresholdPaPerMin = enterPaPerMinute;
+        mExitThresholdPaPerMin = exitPaPerMinute;
+    }
+
+    /**
+     * Feeds a new pressure sample and re-plans the next one.
+     *
+     * @param pressure pressure in Pascal
+     */
+    public synchronized void onSample(int pressure) {
+        mTrend.add(TimeUnit.NANOSECONDS.toMillis(mClock.nanoTime()), pressure);
+        double ratePerHour = mTrend.getRatePerHour();
+        if (mTrend.size() < MIN_RATE_SAMPLES || Double.isNaN(ratePerHour)) {
+            return;
+        }
+        mRatePaPerMin = (float) (ratePerHour / 60);
+        float magnitude = Math.abs(mRatePaPerMin);
+        if (mChanging ? magnitude < mExitThresholdPaPerMin : magnitude > mEnterThresholdPaPerMin) {
+            mChanging = !mChanging;
+            apply(mChanging);
+        }
+    }
+
+    private void apply(boolean changing) {
+        int temperatureRefresh = changing ? 1 : STABLE_TEMPERATURE_REFRESH;
+        long targetInterval = changing ? mFastIntervalMs : mSlowIntervalMs;
+        int mode = Bmp180.BMP180_ULTRA_LOW_POWER;
+        long interval = requiredInterval(mode, temperatureRefresh, targetInterval);
+        if (changing) {
+            for (int candidate : MODES_BY_RESOLUTION) {
+                long candidateInterval = requiredInterval(candidate, temperatureRefresh, targetInterval);
+                if (candidateInterval <= targetInterval) {
+                    mode = candidate;
+                    interval = candidateInterval;
+                    break;
+                }
+            }
+        }
+        mMode = mode;
+        mTemperatureRefresh = temperatureRefresh;
+        mIntervalMs = interval;
+        mSensor.setMode(mode);
+        mSensor.setTemperatureRefreshInterval(temperatureRefresh);
+    }
+
+    /**
+     * @return the shortest interval not shorter than {@code targetInterval} that fits the budget,
+     * capped at one day
+     */
+    private long requiredInterval(int mode, int temperatureRefresh, long targetInterval) {
+        float available = mBudgetUa - Bmp180.STANDBY_CURRENT_UA;
+        if (available <= 0) {
+            return MAX_INTERVAL_MS;
+        }
+        long required = (long) Math.ceil(chargePerSample(mode, temperatureRefresh) / available);
+        return Math.min(MAX_INTERVAL_MS, Math.max(targetInterval, required));
+    }
+
+    /**
+     * @return pressure change rate over the regression window, in Pa per minute
+     */
+    public synchronized float getRatePaPerMinute() {
+        return mRatePaPerMin;
+    }
+
+    /**
+     * @return whether the pressure counts as changing, sampling fast
+     */
+    public synchronized boolean isChanging() {
+        return mChanging;
+    }
+
+    public synchronized int getMode() {
+        return mMode;
+    }
+
+    public synchronized int getTemperatureRefreshInterval() {
+        return mTemperatureRefresh;
+    }
+
+    /**
+     * @return delay until the next sample, in milliseconds
+     */
+    public synchronized long getSampleIntervalMillis() {
+        return mIntervalMs;
+    }
+
+    /**
+     * @return modelled average current of the current plan, in microamperes
+     */
+    public synchronized float getPlannedCurrentUa() {
+        return averageCurrent(mMode, mTemperatureRefresh, mIntervalMs);
+    }
+
+    /**
+     * @return modelled charge drawn by the conversions done so far plus standby, in microampere milliseconds
+     */
+    public synchronized double getModelledChargeUaMs() {
+        double charge = mSensor.getTemperatureConversions()
+                * (double) Bmp180.MAX_POWER_CONSUMPTION_TEMP_UA * Bmp180.temperatureConversionTimeMs();
+        for (int mode : MODES_BY_RESOLUTION) {
+            charge += mSensor.getPressureConversions(mode)
+                    * (double) Bmp180.MAX_POWER_CONSUMPTION_PRESSURE_UA * Bmp180.conversionTimeMs(mode);
+        }
+        return charge + Bmp180.STANDBY_CURRENT_UA * elapsedMillis();
+    }
+
+    /**
+     * @return modelled average current since the scheduler was created, in microamperes
+     */
+    public synchronized float getModelledAverageCurrentUa() {
+        long elapsed = elapsedMillis();
+        return elapsed <= 0 ? 0f : (float) (getModelledChargeUaMs() / elapsed);
+    }
+
+    private long elapsedMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(mClock.nanoTime() - mStartNanos);
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "Bmp180PowerScheduler(mode=" + mMode + ", rate=" + mRatePaPerMin + "Pa/min, interval=" + mIntervalMs + "ms, temperatureRefresh="
+                + mTemperatureRefresh + ", planned=" + getPlannedCurrentUa() + "uA, modelled="
+                + getModelledAverageCurrentUa() + "uA, budget=" + mBudgetUa + "uA)";
+    }
+}
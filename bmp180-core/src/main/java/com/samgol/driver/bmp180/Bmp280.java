@@ -0,0 +1,255 @@
+package com.samgol.driver.bmp180;
+
+
+import java.io.IOException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Driver of the Bosch BMP280 and BME280 (humidity left disabled).
+ * <p>
+ * Unlike the BMP180 the chip free-runs in normal mode: it converts continuously with the
+ * configured oversampling, IIR filter and standby time, and a sample is a single 6 byte burst read
+ * of the latest result, without a command write or a conversion wait.
+ */
+public class Bmp280 implements PressureSensor {
+    private static final Logger LOG = Logger.getLogger(Bmp280.class.getName());
+
+    public final static int BMP280_ADDRESS = 0x77;
+    public final static int BMP280_ADDRESS_ALT = 0x76;
+
+    public final static int BMP280_CHIP_ID = 0x58;
+    public final static int BME280_CHIP_ID = 0x60;
+
+    public final static int OVERSAMPLING_SKIPPED = 0;
+    public final static int OVERSAMPLING_1X = 1;
+    public final static int OVERSAMPLING_2X = 2;
+    public final static int OVERSAMPLING_4X = 3;
+    public final static int OVERSAMPLING_8X = 4;
+    public final static int OVERSAMPLING_16X = 5;
+
+    public final static int FILTER_OFF = 0;
+    public final static int FILTER_2 = 1;
+    public final static int FILTER_4 = 2;
+    public final static int FILTER_8 = 3;
+    public final static int FILTER_16 = 4;
+
+    /**
+     * Standby time between conversions in normal mode, 0.5 ms.
+     */
+    public final static int STANDBY_0_5_MS = 0;
+    public final static int STANDBY_62_5_MS = 1;
+    public final static int STANDBY_125_MS = 2;
+    public final static int STANDBY_250_MS = 3;
+    public final static int STANDBY_500_MS = 4;
+    public final static int STANDBY_1000_MS = 5;
+
+    private final static int BMP280_CAL_DIG_T1 = 0x88;
+    private final static int BMP280_CAL_LENGTH = 24;
+    final static int BMP280_CHIP_ID_REGISTER = 0xD0;
+    private final static int BME280_CTRL_HUM = 0xF2;
+    private final static int BMP280_CTRL_MEAS = 0xF4;
+    private final static int BMP280_CONFIG = 0xF5;
+    private final static int BMP280_DATA = 0xF7;
+    private final static int BMP280_DATA_LENGTH = 6;
+    private final static int MODE_SLEEP = 0;
+    private final static int MODE_NORMAL = 3;
+
+    private int digT1;
+    private int digT2;
+    private int digT3;
+    private int digP1;
+    private int digP2;
+    private int digP3;
+    private int digP4;
+    private int digP5;
+    private int digP6;
+    private int digP7;
+    private int digP8;
+    private int digP9;
+
+    private RegisterTransport mDevice;
+    private final Clock mClock;
+    private final int mChipId;
+    private final byte[] mBuffer = new byte[BMP280_CAL_LENGTH];
+
+    private int pressureOversampling = OVERSAMPLING_16X;
+
+    private volatile float standardSeaLevelPressure = 101500;
+    private volatile PressureSample latestSample;
+
+    /**
+     * Creates the driver and starts the chip in normal mode with 16x pressure, 2x temperature
+     * oversampling, IIR filter 16 and 0.5 ms standby.
+     *
+     * @param transport register access to the chip
+     * @param clock     time source of the sample timestamps
+     * @throws IOException if there was communication problem or the chip is not a BMP280/BME280
+     */
+    public Bmp280(RegisterTransport transport, Clock clock) throws IOException {
+        mDevice = transport;
+        mClock = clock;
+        mChipId = transport.readRegByte(BMP280_CHIP_ID_REGISTER);
+        if (mChipId != BMP280_CHIP_ID && mChipId != BME280_CHIP_ID) {
+            throw new IOException("Not a BMP280/BME280, chip id 0x" + Integer.toHexString(mChipId));
+        }
+        readCalibrationData();
+        configure(OVERSAMPLING_2X, OVERSAMPLING_16X, FILTER_16, STANDBY_0_5_MS);
+    }
+
+    /**
+     * @return true if the chip is a BME280
+     */
+    public boolean isBme280() {
+        return mChipId == BME280_CHIP_ID;
+    }
+
+    @Override
+    public String getChipName() {
+        return isBme280() ? "BME280" : "BMP280";
+    }
+
+    /**
+     * Reconfigures the chip and restarts free-running conversions in normal mode.
+     *
+     * @param temperatureOversampling one of the OVERSAMPLING constants, not skipped
+     * @param pressureOversampling    one of the OVERSAMPLING constants, not skipped
+     * @param filter                  one of the FILTER constants
+     * @param standby                 one of the STANDBY constants
+     * @throws IOException if there was communication problem
+     */
+    public synchronized void configure(int temperatureOversampling, int pressureOversampling, int filter, int standby)
+            throws IOException {
+        if (temperatureOversampling == OVERSAMPLING_SKIPPED || pressureOversampling == OVERSAMPLING_SKIPPED) {
+            throw new IllegalArgumentException("temperature and pressure conversions can't be skipped");
+        }
+        // config is only writable in sleep mode
+        mDevice.writeRegByte(BMP280_CTRL_MEAS, (byte) MODE_SLEEP);
+        mDevice.writeRegByte(BMP280_CONFIG, (byte) ((standby << 5) | (filter << 2)));
+        if (isBme280()) {
+            // ctrl_hum only takes effect after a ctrl_meas write
+            mDevice.writeRegByte(BME280_CTRL_HUM, (byte) OVERSAMPLING_SKIPPED);
+        }
+        mDevice.writeRegByte(BMP280_CTRL_MEAS,
+                (byte) ((temperatureOversampling << 5) | (pressureOversampling << 2) | MODE_NORMAL));
+        this.pressureOversampling = pressureOversampling;
+    }
+
+    private void readCalibrationData() throws IOException {
+        mDevice.readRegBuffer(BMP280_CAL_DIG_T1, mBuffer, BMP280_CAL_LENGTH);
+        digT1 = u16le(mBuffer, 0);
+        digT2 = s16le(mBuffer, 2);
+        digT3 = s16le(mBuffer, 4);
+        digP1 = u16le(mBuffer, 6);
+        digP2 = s16le(mBuffer, 8);
+        digP3 = s16le(mBuffer, 10);
+        digP4 = s16le(mBuffer, 12);
+        digP5 = s16le(mBuffer, 14);
+        digP6 = s16le(mBuffer, 16);
+        digP7 = s16le(mBuffer, 18);
+        digP8 = s16le(mBuffer, 20);
+        digP9 = s16le(mBuffer, 22);
+        if (digT1 == 0 || digP1 == 0) {
+            throw new IOException("Invalid calibration data");
+        }
+    }
+
+    private static int u16le(byte[] buffer, int offset) {
+        return (buffer[offset] & 0xFF) | ((buffer[offset + 1] & 0xFF) << 8);
+    }
+
+    private static int s16le(byte[] buffer, int offset) {
+        return (short) u16le(buffer, offset);
+    }
+
+    @Override
+    public synchronized PressureSample readSample() throws IOException {
+        long start = mClock.nanoTime();
+        mDevice.readRegBuffer(BMP280_DATA, mBuffer, BMP280_DATA_LENGTH);
+        long busComplete = mClock.nanoTime();
+        int rawPressure = ((mBuffer[0] & 0xFF) << 12) | ((mBuffer[1] & 0xFF) << 4) | ((mBuffer[2] & 0xFF) >> 4);
+        int rawTemperature = ((mBuffer[3] & 0xFF) << 12) | ((mBuffer[4] & 0xFF) << 4) | ((mBuffer[5] & 0xFF) >> 4);
+
+        // Bosch reference compensation, 32 bit temperature and 64 bit pressure
+        int var1 = (((rawTemperature >> 3) - (digT1 << 1)) * digT2) >> 11;
+        int var2 = (((((rawTemperature >> 4) - digT1) * ((rawTemperature >> 4) - digT1)) >> 12) * digT3) >> 14;
+        int tFine = var1 + var2;
+        int temperatureHundredths = (tFine * 5 + 128) >> 8;
+
+        long p1 = (long) tFine - 128000;
+        long p2 = p1 * p1 * digP6;
+        p2 = p2 + ((p1 * digP5) << 17);
+        p2 = p2 + (((long) digP4) << 35);
+        p1 = ((p1 * p1 * digP3) >> 8) + ((p1 * digP2) << 12);
+        p1 = ((((long) 1) << 47) + p1) * digP1 >> 33;
+        if (p1 == 0) {
+            throw new IOException("Invalid calibration data");
+        }
+        long p = 1048576 - rawPressure;
+        p = (((p << 31) - p2) * 3125) / p1;
+        p1 = (((long) digP9) * (p >> 13) * (p >> 13)) >> 25;
+        p2 = (((long) digP8) * p) >> 19;
+        p = ((p + p1 + p2) >> 8) + (((long) digP7) << 4);
+
+        PressureSample sample = new PressureSample((int) (p >> 8), Math.round(temperatureHundredths / 10f),
+                standardSeaLevelPressure, bmp180Mode(pressureOversampling), rawTemperature, rawPressure,
+                start, busComplete, mClock.nanoTime());
+        latestSample = sample;
+        return sample;
+    }
+
+    /**
+     * Maps an oversampling setting to the BMP180 mode with the same number of pressure samples,
+     * the mode consumers of {@link PressureSample#getMode()} expect.
+     */
+    static int bmp180Mode(int oversampling) {
+        return Math.min(Bmp180.BMP180_ULTRA_HIGH_RES, oversampling - OVERSAMPLING_1X);
+    }
+
+    @Override
+    public PressureSample getLatestSample() {
+        return latestSample;
+    }
+
+    @Override
+    public float readTemperature() throws IOException {
+        return readSample().getTemperature();
+    }
+
+    @Override
+    public int readPressure() throws IOException {
+        return readSample().getPressure();
+    }
+
+    @Override
+    public float readAltitude() throws IOException {
+        return readSample().getAltitude(standardSeaLevelPressure);
+    }
+
+    @Override
+    public float[] readAllValues() throws IOException {
+        PressureSample sample = readSample();
+        return new float[]{sample.getPressure(), sample.getTemperature(), sample.getAltitude(standardSeaLevelPressure)};
+    }
+
+    @Override
+    public void setStandardSeaLevelPressure(float standardSeaLevelPressure) {
+        this.standardSeaLevelPressure = standardSeaLevelPressure;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (mDevice != null) {
+            try {
+                mDevice.writeRegByte(BMP280_CTRL_MEAS, (byte) MODE_SLEEP);
+            } catch (IOException e) {
+                LOG.log(Level.SEVERE, "close: can't put the chip to sleep", e);
+            }
+            try {
+                mDevice.close();
+            } finally {
+                mDevice = null;
+            }
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package com.samgol.driver.bmp180;
+
+/**
+ * Persists calibration blocks between driver instances, so a chip is only read once.
+ */
+public interface CalibrationStore {
+
+    /**
+     * @param key identifies the chip: bus, address and chip id
+     * @return the stored calibration, or null if there is none or it is corrupt
+     */
+    Bmp180Calibration load(String key);
+
+    /**
+     * @param key         identifies the chip: bus, address and chip id
+     * @param calibration the validated calibration
+     */
+    void save(String key, Bmp180Calibration calibration);
+}
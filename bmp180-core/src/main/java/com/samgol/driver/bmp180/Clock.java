@@ -0,0 +1,56 @@
+package com.samgol.driver.bmp180;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Time source of the driver. Conversion waits and read caching go through it, so the driver can
+ * run in virtual time against a fake bus.
+ */
+public interface Clock {
+
+    /**
+     * @return monotonic time in nanoseconds
+     */
+    long nanoTime();
+
+    /**
+     * @return wall clock time in milliseconds since the epoch
+     */
+    long currentTimeMillis();
+
+    /**
+     * Blocks for the given time. The system clock parks the thread until the deadline, so
+     * sub-millisecond waits are not rounded up to the next millisecond like
+     * {@link Thread#sleep(long, int)} does; they may still overshoot by the timer slack of the
+     * platform.
+     *
+     * @param nanos time to wait in nanoseconds
+     * @throws InterruptedException if the thread was interrupted while waiting
+     */
+    void sleep(long nanos) throws InterruptedException;
+
+    Clock SYSTEM = new Clock() {
+        @Override
+        public long nanoTime() {
+            return System.nanoTime();
+        }
+
+        @Override
+        public long currentTimeMillis() {
+            return System.currentTimeMillis();
+        }
+
+        @Override
+        public void sleep(long nanos) throws InterruptedException {
+            long deadline = System.nanoTime() + nanos;
+            long remaining = nanos;
+            while (remaining > 0) {
+                if (Thread.interrupted()) {
+                    throw new InterruptedException();
+                }
+                LockSupport.parkNanos(remaining);
+                remaining = deadline - System.nanoTime();
+            }
+        }
+    };
+}
@@ -0,0 +1,89 @@
+package com.samgol.driver.bmp180;
+
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * {@link CalibrationStore} keeping one small file per chip: the calibration block followed by
+ * its CRC32. Files failing the checksum or the validation are ignored.
+ */
+public class FileCalibrationStore implements CalibrationStore {
+    private static final Logger LOG = Logger.getLogger(FileCalibrationStore.class.getName());
+
+    private final File mDirectory;
+
+    /**
+     * @param directory where to keep the calibration files, e.g. {@code Context.getFilesDir()}
+     */
+    public FileCalibrationStore(File directory) {
+        mDirectory = directory;
+    }
+
+    @Override
+    public synchronized Bmp180Calibration load(String key) {
+        File file = file(key);
+        if (!file.exists()) {
+            return null;
+        }
+        DataInputStream in = null;
+        try {
+            in = new DataInputStream(new FileInputStream(file));
+            byte[] block = new byte[Bmp180Calibration.LENGTH];
+            in.readFully(block);
+            long checksum = in.readLong();
+            Bmp180Calibration calibration = Bmp180Calibration.fromBlock(block);
+            if (calibration.checksum() != checksum) {
+                LOG.warning("load: checksum mismatch in " + file);
+                return null;
+            }
+            return calibration;
+        } catch (IOException e) {
+            LOG.log(Level.SEVERE, "load: can't read " + file, e);
+            return null;
+        } finally {
+            closeQuietly(in);
+        }
+    }
+
+    @Override
+    public synchronized void save(String key, Bmp180Calibration calibration) {
+        File file = file(key);
+        File temp = new File(mDirectory, file.getName() + ".tmp");
+        DataOutputStream out = null;
+        try {
+            out = new DataOutputStream(new FileOutputStream(temp));
+            out.write(calibration.toBlock());
+            out.writeLong(calibration.checksum());
+            out.close();
+            out = null;
+            if (!temp.renameTo(file)) {
+                throw new IOException("can't rename " + temp + " to " + file);
+            }
+        } catch (IOException e) {
+            LOG.log(Level.SEVERE, "save: can't write " + file, e);
+        } finally {
+            closeQuietly(out);
+        }
+    }
+
+    private File file(String key) {
+        return new File(mDirectory, "calibration-" + key.replaceAll("[^A-Za-z0-9_.-]", "_") + ".bin");
+    }
+
+    private static void closeQuietly(AutoCloseable closeable) {
+        if (closeable != null) {
+            try {
+                closeable.close();
+            } catch (Exception e) {
+                LOG.log(Level.SEVERE, "close error: ", e);
+            }
+        }
+    }
+}
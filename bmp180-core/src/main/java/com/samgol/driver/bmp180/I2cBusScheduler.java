@@ -0,0 +1,533 @@
+package com.samgol.driver.bmp180;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Owns one physical I2C bus and runs the register transactions of all drivers on it from a single
+ * bus thread.
+ * <p>
+ * Every driver registers a {@link Client} with a priority and a deadline and talks to its device
+ * through it, the client is a {@link RegisterTransport}, so the drivers need no changes. Each
+ * register access is queued as a transaction and the caller blocks until the bus thread has run it.
+ * Pending transactions run by priority, then by earliest deadline, then in submission order; a
+ * running transaction is never preempted. Transactions age by their deadline: one whose deadline has
+ * passed runs before all transactions still on time, whatever the priorities, and the overdue ones
+ * run by earliest deadline. A low priority client therefore waits at most about its deadline plus
+ * the overdue work ahead of it, instead of starving behind busier high priority clients. A caller interrupted while waiting gets an
+ * {@link InterruptedIOException} and its transaction is cancelled; a read that already ran is
+ * discarded without touching the caller's buffer.
+ * <p>
+ * The bus is held only for the register access itself. A BMP180 waits out its conversion between
+ * two transactions, so the bus serves the other clients in the meantime instead of idling.
+ * <p>
+ * The scheduler reports the bus utilization and, per client, the queueing delay, the time on the
+ * bus and the missed deadlines.
+ */
+public class I2cBusScheduler implements AutoCloseable {
+    private static final Logger LOG = Logger.getLogger(I2cBusScheduler.class.getName());
+
+    public static final int PRIORITY_LOW = 0;
+    public static final int PRIORITY_NORMAL = 5;
+    public static final int PRIORITY_HIGH = 10;
+
+    private static final int READ_BYTE = 0;
+    private static final int READ_BUFFER = 1;
+    private static final int WRITE_BYTE = 2;
+    private static final int CLOSE = 3;
+
+    private static final Comparator<Transaction> ORDER = new Comparator<Transaction>() {
+        @Override
+        public int compare(Transaction a, Transaction b) {
+            if (a.client.mPriority != b.client.mPriority) {
+                return a.client.mPriority > b.client.mPriority ? -1 : 1;
+            }
+            if (a.deadlineNanos != b.deadlineNanos) {
+                return a.deadlineNanos - b.deadlineNanos < 0 ? -1 : 1;
+            }
+            return a.sequence < b.sequence ? -1 : (a.sequence == b.sequence ? 0 : 1);
+        }
+    };
+
+    private static final Comparator<Transaction> BY_DEADLINE = new Comparator<Transaction>() {
+        @Override
+        public int compare(Transaction a, Transaction b) {
+            if (a.deadlineNanos != b.deadlineNanos) {
+                return a.deadlineNanos - b.deadlineNanos < 0 ? -1 : 1;
+            }
+            return a.sequence < b.sequence ? -1 : (a.sequence == b.sequence ? 0 : 1);
+        }
+    };
+
+    private final String mBusName;
+    private final Clock mClock;
+    private final PriorityQueue<Transaction> mQueue = new PriorityQueue<>(16, ORDER);
+    // the same transactions by deadline, guarded by mQueue
+    private final PriorityQueue<Transaction> mByDeadline = new PriorityQueue<>(16, BY_DEADLINE);
+    private final List<Client> mClients = new ArrayList<>();
+    private final Thread mThread;
+
+    private long mSequence;
+    private boolean mPaused;
+    private boolean mClosed;
+
+    private final long mStartNanos;
+    private long mBusyNanos;
+    private long mTransactions;
+
+    public I2cBusScheduler(String busName) {
+        this(busName, Clock.SYSTEM);
+    }
+
+    /**
+     * @param busName name of the bus, used for the bus thread and the report
+     * @param clock   time source of the queueing and utilization statistics
+     */
+    public I2cBusScheduler(String busName, Clock clock) {
+        mBusName = busName;
+        mClock = clock;
+        mStartNanos = clock.nanoTime();
+        mThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                loop();
+            }
+        }, "I2cBus-" + busName);
+        mThread.setDaemon(true);
+        mThread.start();
+    }
+
+    /**
+     * Registers a device on the bus.
+     *
+     * @param name           client name used in the report
+     * @param device         the device, accessed only from the bus thread from now on
+     * @param priority       higher runs first, e.g. {@link #PRIORITY_HIGH}
+     * @param deadlineMillis time a transaction of this client may take from submission to
+     *                       completion before it counts as a missed deadline; also orders the
+     *                       transactions of clients with the same priority
+     * @return the transport the driver of the device should use
+     */
+    public Client register(String name, RegisterTransport device, int priority, long deadlineMillis) {
+        Client client = new Client(name, device, priority, TimeUnit.MILLISECONDS.toNanos(deadlineMillis));
+        synchronized (mQueue) {
+            if (mClosed) {
+                throw new IllegalStateException("bus " + mBusName + " is closed");
+            }
+            mClients.add(client);
+        }
+        return client;
+    }
+
+    /**
+     * Holds pending transactions in the queue until {@link #resume()}, the running one completes.
+     */
+    public void pause() {
+        synchronized (mQueue) {
+            mPaused = true;
+        }
+    }
+
+    public void resume() {
+        synchronized (mQueue) {
+            mPaused = false;
+            mQueue.notifyAll();
+        }
+    }
+
+    /**
+     * @return number of transactions waiting for the bus
+     */
+    public int getQueueLength() {
+        synchronized (mQueue) {
+            return mQueue.size();
+        }
+    }
+
+    public List<Client> getClients() {
+        synchronized (mQueue) {
+            return new ArrayList<>(mClients);
+        }
+    }
+
+    /**
+     * @return share of the time since the scheduler was created the bus spent in transactions, 0..1
+     */
+    public float getUtilization() {
+        long elapsed = mClock.nanoTime() - mStartNanos;
+        synchronized (mQueue) {
+            return elapsed <= 0 ? 0f : Math.min(1f, (float) mBusyNanos / elapsed);
+        }
+    }
+
+    public long getTransactions() {
+        synchronized (mQueue) {
+            return mTransactions;
+        }
+    }
+
+    /**
+     * @return one line for the bus and one per client
+     */
+    public String report() {
+        StringBuilder report = new StringBuilder();
+        report.append(mBusName).append(": utilization=")
+                .append(Math.round(getUtilization() * 1000) / 10f).append("% transactions=")
+                .append(getTransactions());
+        for (Client client : getClients()) {
+            report.append('\n').append(client);
+        }
+        return report.toString();
+    }
+
+    /**
+     * Fails the pending transactions, stops the bus thread and closes the devices still registered.
+     */
+    @Override
+    public void close() throws IOException {
+        List<Client> clients;
+        List<Transaction> closing = new ArrayList<>();
+        synchronized (mQueue) {
+            if (mClosed) {
+                return;
+            }
+            mClosed = true;
+            clients = new ArrayList<>(mClients);
+            mClients.clear();
+            Transaction pending;
+            while ((pending = mQueue.poll()) != null) {
+                if (pending.type == CLOSE) {
+                    // the client is already unregistered, its device is closed here instead
+                    clients.add(pending.client);
+                    closing.add(pending);
+                } else {
+                    pending.complete(new IOException("bus " + mBusName + " closed"));
+                }
+            }
+            mByDeadline.clear();
+            mQueue.notifyAll();
+        }
+        try {
+            mThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        for (Client client : clients) {
+            client.mDevice.close();
+        }
+        for (Transaction transaction : closing) {
+            transaction.complete(null);
+        }
+    }
+
+    private void submit(Transaction transaction) throws IOException {
+        enqueue(transaction);
+        await(transaction);
+    }
+
+    private void enqueue(Transaction transaction) throws IOException {
+        synchronized (mQueue) {
+            if (mClosed) {
+                throw new IOException("bus " + mBusName + " closed");
+            }
+            if (transaction.client.mClosed && transaction.type != CLOSE) {
+                throw new IOException(transaction.client.mName + " closed");
+            }
+            transaction.sequence = mSequence++;
+            transaction.submitNanos = mClock.nanoTime();
+            transaction.deadlineNanos = transaction.submitNanos + transaction.client.mDeadlineNanos;
+            mQueue.add(transaction);
+            mByDeadline.add(transaction);
+            mQueue.notifyAll();
+        }
+    }
+
+    private void await(Transaction transaction) throws IOException {
+        try {
+            transaction.await();
+        } catch (InterruptedIOException e) {
+            // a close still runs, the device must not stay open
+            if (transaction.type != CLOSE) {
+                synchronized (mQueue) {
+                    mQueue.remove(transaction);
+                    mByDeadline.remove(transaction);
+                }
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * @return the earliest overdue transaction, or the first one by priority when none is overdue
+     */
+    private Transaction next() {
+        Transaction transaction = mByDeadline.peek();
+        if (mClock.nanoTime() - transaction.deadlineNanos < 0) {
+            transaction = mQueue.peek();
+        }
+        mQueue.remove(transaction);
+        mByDeadline.remove(transaction);
+        return transaction;
+    }
+
+    private void loop() {
+        while (true) {
+            Transaction transaction;
+            synchronized (mQueue) {
+                while (!mClosed && (mPaused || mQueue.isEmpty())) {
+                    try {
+                        mQueue.wait();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+                if (mClosed) {
+                    return;
+                }
+                transaction = next();
+            }
+            if (transaction.isCancelled() && transaction.type != CLOSE) {
+                continue;
+            }
+            long start = mClock.nanoTime();
+            IOException error = null;
+            try {
+                transaction.execute();
+            } catch (IOException e) {
+                error = e;
+            } catch (RuntimeException e) {
+                LOG.log(Level.WARNING, "transaction of " + transaction.client.mName + " failed", e);
+                error = new IOException(e);
+            }
+            long end = mClock.nanoTime();
+            synchronized (mQueue) {
+                mBusyNanos += end - start;
+                if (transaction.type != CLOSE) {
+                    mTransactions++;
+                    transaction.client.record(start - transaction.submitNanos, end - start,
+                            end - transaction.deadlineNanos > 0);
+                }
+            }
+            transaction.complete(error);
+        }
+    }
+
+    /**
+     * A device on the scheduled bus. Its register accesses block until the bus thread has run them.
+     */
+    public class Client implements RegisterTransport {
+        private final String mName;
+        private final RegisterTransport mDevice;
+        private final int mPriority;
+        private final long mDeadlineNanos;
+
+        // guarded by mQueue
+        private boolean mClosed;
+        private long mTransactions;
+        private long mQueueDelaySumNanos;
+        private long mMaxQueueDelayNanos;
+        private long mBusyNanos;
+        private long mMissedDeadlines;
+
+        private Client(String name, RegisterTransport device, int priority, long deadlineNanos) {
+            mName = name;
+            mDevice = device;
+            mPriority = priority;
+            mDeadlineNanos = deadlineNanos;
+        }
+
+        @Override
+        public int readRegByte(int register) throws IOException {
+            Transaction transaction = new Transaction(this, READ_BYTE, register, null, 1, (byte) 0);
+            submit(transaction);
+            return transaction.result;
+        }
+
+        @Override
+        public void readRegBuffer(int register, byte[] buffer, int length) throws IOException {
+            Transaction transaction = new Transaction(this, READ_BUFFER, register, new byte[length], length, (byte) 0);
+            submit(transaction);
+            // the bus thread reads into the transaction, only the caller writes its own buffer
+            System.arraycopy(transaction.buffer, 0, buffer, 0, length);
+        }
+
+        @Override
+        public void writeRegByte(int register, byte value) throws IOException {
+            submit(new Transaction(this, WRITE_BYTE, register, null, 1, value));
+        }
+
+        /**
+         * Unregisters the client, fails its pending transactions and closes its device on the bus
+         * thread once the running transaction is done. Blocks until the device is closed.
+         */
+        @Override
+        public void close() throws IOException {
+            List<Transaction> cancelled = new ArrayList<>();
+            Transaction close = new Transaction(this, CLOSE, 0, null, 0, (byte) 0);
+            synchronized (mQueue) {
+                if (!mClients.remove(this)) {
+                    return;
+                }
+                mClosed = true;
+                for (Transaction pending : mQueue) {
+                    if (pending.client == this) {
+                        cancelled.add(pending);
+                    }
+                }
+                mQueue.removeAll(cancelled);
+                mByDeadline.removeAll(cancelled);
+                // queued under the same lock, so a closing bus closes the device instead
+                enqueue(close);
+            }
+            for (Transaction pending : cancelled) {
+                pending.complete(new IOException(mName + " closed"));
+            }
+            await(close);
+        }
+
+        private void record(long queueDelayNanos, long busyNanos, boolean missed) {
+            mTransactions++;
+            mQueueDelaySumNanos += queueDelayNanos;
+            mBusyNanos += busyNanos;
+            if (queueDelayNanos > mMaxQueueDelayNanos) {
+                mMaxQueueDelayNanos = queueDelayNanos;
+            }
+            if (missed) {
+                mMissedDeadlines++;
+            }
+        }
+
+        public String getName() {
+            return mName;
+        }
+
+        public int getPriority() {
+            return mPriority;
+        }
+
+        public long getTransactions() {
+            synchronized (mQueue) {
+                return mTransactions;
+            }
+        }
+
+        /**
+         * @return mean time from submission to the start of the transaction on the bus
+         */
+        public long getMeanQueueDelayNanos() {
+            synchronized (mQueue) {
+                return mTransactions == 0 ? 0 : mQueueDelaySumNanos / mTransactions;
+            }
+        }
+
+        public long getMaxQueueDelayNanos() {
+            synchronized (mQueue) {
+                return mMaxQueueDelayNanos;
+            }
+        }
+
+        /**
+         * @return time the bus spent in transactions of this client
+         */
+        public long getBusyNanos() {
+            synchronized (mQueue) {
+                return mBusyNanos;
+            }
+        }
+
+        public long getMissedDeadlines() {
+            synchronized (mQueue) {
+                return mMissedDeadlines;
+            }
+        }
+
+        @Override
+        public String toString() {
+            synchronized (mQueue) {
+                return mName + "(priority=" + mPriority + ", transactions=" + mTransactions
+                        + ", queue delay mean=" + TimeUnit.NANOSECONDS.toMicros(getMeanQueueDelayNanos())
+                        + "us max=" + TimeUnit.NANOSECONDS.toMicros(mMaxQueueDelayNanos)
+                        + "us, busy=" + TimeUnit.NANOSECONDS.toMillis(mBusyNanos)
+                        + "ms, missed deadlines=" + mMissedDeadlines + ")";
+            }
+        }
+    }
+
+    private static class Transaction {
+        final Client client;
+        final int type;
+        final int register;
+        final byte[] buffer;
+        final int length;
+        final byte value;
+
+        long sequence;
+        long submitNanos;
+        long deadlineNanos;
+        int result;
+
+        private boolean mDone;
+        private boolean mCancelled;
+        private IOException mError;
+
+        Transaction(Client client, int type, int register, byte[] buffer, int length, byte value) {
+            this.client = client;
+            this.type = type;
+            this.register = register;
+            this.buffer = buffer;
+            this.length = length;
+            this.value = value;
+        }
+
+        void execute() throws IOException {
+            switch (type) {
+                case READ_BYTE:
+                    result = client.mDevice.readRegByte(register);
+                    break;
+                case READ_BUFFER:
+                    client.mDevice.readRegBuffer(register, buffer, length);
+                    break;
+                case WRITE_BYTE:
+                    client.mDevice.writeRegByte(register, value);
+                    break;
+                case CLOSE:
+                    client.mDevice.close();
+                    break;
+                default:
+                    throw new IllegalStateException("unknown transaction " + type);
+            }
+        }
+
+        synchronized void complete(IOException error) {
+            mError = error;
+            mDone = true;
+            notifyAll();
+        }
+
+        synchronized boolean isCancelled() {
+            return mCancelled;
+        }
+
+        synchronized void await() throws IOException {
+            while (!mDone) {
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    mCancelled = true;
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("interrupted waiting for the bus");
+                }
+            }
+            if (mError != null) {
+                throw mError;
+            }
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package com.samgol.driver.bmp180;
+
+
+
+import java.io.IOException;
+import java.util.logging.Logger;
+
+
+
+class I2cUtils {
+
+    private static final Logger LOG = Logger.getLogger(I2cUtils.class.getName());
+    private static final boolean DEBUG = false;
+
+    static int readU8(RegisterTransport device, int reg) throws IOException {
+        int result = device.readRegByte(reg);
+        if (DEBUG)
+            LOG.fine("readU8: (0x" + Integer.toHexString(result) +
+                    ") from reg (0x" + Integer.toHexString(reg) + ")");
+        return result;
+    }
+
+    static int readU16BE(RegisterTransport device, int register) throws IOException {
+        int hi = readU8(device, register);
+        int lo = readU8(device, register + 1);
+        return (hi << 8) + lo;
+    }
+}
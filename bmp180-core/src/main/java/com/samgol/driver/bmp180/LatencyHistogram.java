@@ -0,0 +1,61 @@
+package com.samgol.driver.bmp180;
+
+/**
+ * Log2 bucketed latency histogram, bucket i counts latencies in [2^i, 2^(i+1)) microseconds.
+ */
+public class LatencyHistogram {
+
+    private static final int BUCKETS = 40;
+
+    private final String mName;
+    private final long[] mBuckets = new long[BUCKETS];
+    private long mCount;
+    private long mSum;
+    private long mMax;
+
+    public LatencyHistogram(String name) {
+        mName = name;
+    }
+
+    public String getName() {
+        return mName;
+    }
+
+    public synchronized void record(long micros) {
+        long value = Math.max(0L, micros);
+        int bucket = Math.min(BUCKETS - 1, 63 - Long.numberOfLeadingZeros(Math.max(1L, value)));
+        mBuckets[bucket]++;
+        mCount++;
+        mSum += value;
+        mMax = Math.max(mMax, value);
+    }
+
+    public synchronized long getCount() {
+        return mCount;
+    }
+
+    /**
+     * @return upper bound of the bucket holding the quantile, in microseconds
+     */
+    public synchronized long percentile(double quantile) {
+        if (mCount == 0L) {
+            return 0;
+        }
+        long rank = (long) Math.ceil(quantile * mCount);
+        long seen = 0L;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += mBuckets[i];
+            if (seen >= rank) {
+                return Math.min(mMax, (1L << (i + 1)) - 1);
+            }
+        }
+        return mMax;
+    }
+
+    @Override
+    public synchronized String toString() {
+        long mean = mCount == 0L ? 0L : mSum / mCount;
+        return mName + ": n=" + mCount + " mean=" + mean + "us p50<=" + percentile(0.5) + "us p99<="
+                + percentile(0.99) + "us max=" + mMax + "us";
+    }
+}
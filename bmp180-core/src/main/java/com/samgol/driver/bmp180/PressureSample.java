@@ -0,0 +1,116 @@
+package com.samgol.driver.bmp180;
+
+/**
+ * Immutable result of one completed pressure measurement.
+ * <p>
+ * The driver publishes every sample through a volatile reference, so any number of threads can
+ * read the latest values without taking the driver lock or touching the bus.
+ */
+public final class PressureSample {
+
+    private static final double POW_FACT = 0.1903;
+
+    private final int pressure;
+    private final int temperatureTenths;
+    private final float seaLevelPressure;
+    private final int mode;
+    private final int rawTemperature;
+    private final int rawPressure;
+    private final long conversionStartNanos;
+    private final long busCompleteNanos;
+    private final long compensatedNanos;
+
+    PressureSample(int pressure, int temperatureTenths, float seaLevelPressure, int mode,
+                   int rawTemperature, int rawPressure,
+                   long conversionStartNanos, long busCompleteNanos, long compensatedNanos) {
+        this.pressure = pressure;
+        this.temperatureTenths = temperatureTenths;
+        this.seaLevelPressure = seaLevelPressure;
+        this.mode = mode;
+        this.rawTemperature = rawTemperature;
+        this.rawPressure = rawPressure;
+        this.conversionStartNanos = conversionStartNanos;
+        this.busCompleteNanos = busCompleteNanos;
+        this.compensatedNanos = compensatedNanos;
+    }
+
+    /**
+     * @return the pressure in Pascal
+     */
+    public int getPressure() {
+        return pressure;
+    }
+
+    /**
+     * @return the temperature in degrees Celsius
+     */
+    public float getTemperature() {
+        return temperatureTenths / 10.0F;
+    }
+
+    /**
+     * Returns the barometric altitude for the sea level pressure set when the sample was taken.
+     * Computed on the calling thread.
+     *
+     * @return the barometric altitude above sea level in meters
+     */
+    public float getAltitude() {
+        return getAltitude(seaLevelPressure);
+    }
+
+    /**
+     * @param seaLevelPressure the sea level pressure in Pascal
+     * @return the barometric altitude above sea level in meters
+     */
+    public float getAltitude(float seaLevelPressure) {
+        return (float) (44330.0 * (1.0 - Math.pow(pressure / seaLevelPressure, POW_FACT)));
+    }
+
+    /**
+     * @return oversampling mode of the pressure conversion as a BMP180 mode, 0..3. Other chips
+     * report the mode with the same number of samples, 8x and 16x both map to ultra high resolution.
+     */
+    public int getMode() {
+        return mode;
+    }
+
+    /**
+     * @return the raw (uncompensated) temperature
+     */
+    public int getRawTemperature() {
+        return rawTemperature;
+    }
+
+    /**
+     * @return the raw (uncompensated) pressure, scaled by the oversampling mode
+     */
+    public int getRawPressure() {
+        return rawPressure;
+    }
+
+    /**
+     * @return {@link Clock#nanoTime()} when the first conversion of the sample was started
+     */
+    public long getConversionStartNanos() {
+        return conversionStartNanos;
+    }
+
+    /**
+     * @return {@link Clock#nanoTime()} when the raw pressure was read from the bus
+     */
+    public long getBusCompleteNanos() {
+        return busCompleteNanos;
+    }
+
+    /**
+     * @return {@link Clock#nanoTime()} when the compensation finished
+     */
+    public long getCompensatedNanos() {
+        return compensatedNanos;
+    }
+
+    @Override
+    public String toString() {
+        return "PressureSample(pressure=" + pressure + ", temperature=" + getTemperature() + ", mode=" + mode + ")";
+    }
+}
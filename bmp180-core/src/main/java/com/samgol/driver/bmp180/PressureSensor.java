@@ -0,0 +1,76 @@
+package com.samgol.driver.bmp180;
+
+import java.io.IOException;
+
+/**
+ * Barometric pressure and temperature sensor.
+ * <p>
+ * Implemented by {@link Bmp180} and {@link Bmp280}, so {@code Bmp180SensorDriver} and the
+ * applications work against either chip.
+ */
+public interface PressureSensor extends AutoCloseable {
+
+    /**
+     * Returns the name of the detected chip.
+     *
+     * @return the chip name, e.g. "BMP180" or "BME280"
+     */
+    String getChipName();
+
+    /**
+     * Returns the temperature in degrees Celsius.
+     *
+     * @return the temperature in degrees Celsius.
+     * @throws IOException if there was communication problem
+     */
+    float readTemperature() throws IOException;
+
+    /**
+     * Returns the pressure in Pascal.
+     *
+     * @return the pressure in Pascal.
+     * @throws IOException if there was communication problem
+     */
+    int readPressure() throws IOException;
+
+    /**
+     * Returns the barometric altitude above sea level in meters.
+     *
+     * @return the barometric altitude above sea level in meters.
+     * @throws IOException if there was communication problem
+     */
+    float readAltitude() throws IOException;
+
+    /**
+     * Returns the array with: the pressure in Pascal,the temperature in degrees Celsius,the barometric altitude above sea level in meters
+     *
+     * @return the array with: the pressure in Pascal,the temperature in degrees Celsius,the barometric altitude above sea level in meters
+     * @throws IOException if there was communication problem
+     */
+    float[] readAllValues() throws IOException;
+
+    /**
+     * Measures the pressure and temperature and publishes the result as the latest sample.
+     *
+     * @return the measured sample
+     * @throws IOException if there was communication problem
+     */
+    PressureSample readSample() throws IOException;
+
+    /**
+     * Returns the last published sample without blocking and without bus access.
+     *
+     * @return the latest sample, or null if no pressure was measured yet
+     */
+    PressureSample getLatestSample();
+
+    /**
+     * Set the standard sea level pressure for altitude calculation
+     *
+     * @param standardSeaLevelPressure the standard sea level pressure for your location
+     */
+    void setStandardSeaLevelPressure(float standardSeaLevelPressure);
+
+    @Override
+    void close() throws IOException;
+}
@@ -0,0 +1,179 @@
+package com.samgol.driver.bmp180;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Least squares rate of change of the pressure over a sliding time window.
+ * <p>
+ * Samples are kept in a primitive ring together with the running sums of the fit, so every sample
+ * costs O(1) no matter how long the window is. Samples leave the window by their timestamp only.
+ * Memory is bounded whatever the sample rate: the window is split into at most
+ * {@link #MAX_SAMPLES} buckets, and samples arriving within one bucket width of the latest entry are
+ * averaged into it. At the usual rates of a weather station every sample gets its own entry.
+ * <p>
+ * Not thread safe.
+ */
+public class PressureTrend {
+
+    /**
+     * Upper bound of the ring size, about 40 KB.
+     */
+    public static final int MAX_SAMPLES = 2048;
+
+    private static final long HOUR_MS = TimeUnit.HOURS.toMillis(1);
+    private static final int RESUM_PERIOD = 1024;
+
+    private final long mWindowMillis;
+    private final long mBucketMillis;
+
+    private long[] mTimes;
+    private double[] mValues;
+    private int[] mCounts;
+    private int mHead;
+    private int mSize;
+
+    // x is hours since origin
+    private long mOrigin;
+    private double mSumX;
+    private double mSumY;
+    private double mSumXX;
+    private double mSumXY;
+    private int mUpdatesSinceResum;
+
+    /**
+     * @param windowMillis width of the regression window
+     * @param capacity     initial ring size, grows up to {@link #MAX_SAMPLES} when the window holds
+     *                     more samples
+     */
+    public PressureTrend(long windowMillis, int capacity) {
+        mWindowMillis = windowMillis;
+        mBucketMillis = Math.max(1, (windowMillis + MAX_SAMPLES - 2) / (MAX_SAMPLES - 1));
+        int initial = Math.max(2, Math.min(MAX_SAMPLES, capacity));
+        mTimes = new long[initial];
+        mValues = new double[initial];
+        mCounts = new int[initial];
+    }
+
+    /**
+     * @param time  sample time in milliseconds, mostly increasing
+     * @param value the pressure, in any unit; the rate is in the same unit per hour
+     */
+    public void add(long time, double value) {
+        if (mSize == 0) {
+            mOrigin = time;
+        }
+        while (mSize > 0 && time - mTimes[mHead] > mWindowMillis) {
+            removeOldest();
+        }
+        int last = (mHead + mSize - 1) % mTimes.length;
+        if (mSize > 0 && time >= mTimes[last] && time - mTimes[last] < mBucketMillis) {
+            accumulate(mTimes[last], mValues[last], -1);
+            mCounts[last]++;
+            mValues[last] += (value - mValues[last]) / mCounts[last];
+            accumulate(mTimes[last], mValues[last], 1);
+        } else {
+            if (mSize == mTimes.length) {
+                if (mTimes.length < MAX_SAMPLES) {
+                    grow();
+                } else {
+                    removeOldest();
+                }
+            }
+            int index = (mHead + mSize) % mTimes.length;
+            mTimes[index] = time;
+            mValues[index] = value;
+            mCounts[index] = 1;
+            mSize++;
+            accumulate(time, value, 1);
+        }
+
+        // running sums slowly drift, recompute them from the ring once in a while
+        if (++mUpdatesSinceResum >= RESUM_PERIOD) {
+            resum();
+        }
+    }
+
+    /**
+     * @return time between the oldest and the latest entry of the window, in milliseconds
+     */
+    public long getSpanMillis() {
+        return mSize > 1 ? mTimes[(mHead + mSize - 1) % mTimes.length] - mTimes[mHead] : 0;
+    }
+
+    /**
+     * @return slope of the fit in value units per hour, NaN with less than two distinct sample times
+     */
+    public double getRatePerHour() {
+        double denominator = mSize * mSumXX - mSumX * mSumX;
+        if (mSize < 2 || denominator <= 0.0) {
+            return Double.NaN;
+        }
+        return (mSize * mSumXY - mSumX * mSumY) / denominator;
+    }
+
+    /**
+     * @return number of entries in the window
+     */
+    public int size() {
+        return mSize;
+    }
+
+    /**
+     * @return current ring size, at most {@link #MAX_SAMPLES}
+     */
+    public int getCapacity() {
+        return mTimes.length;
+    }
+
+    public void clear() {
+        mHead = 0;
+        mSize = 0;
+        resum();
+    }
+
+    private void removeOldest() {
+        accumulate(mTimes[mHead], mValues[mHead], -1);
+        mHead = (mHead + 1) % mTimes.length;
+        mSize--;
+    }
+
+    private void grow() {
+        int capacity = Math.min(MAX_SAMPLES, mTimes.length * 2);
+        long[] times = new long[capacity];
+        double[] values = new double[capacity];
+        int[] counts = new int[capacity];
+        for (int i = 0; i < mSize; i++) {
+            int index = (mHead + i) % mTimes.length;
+            times[i] = mTimes[index];
+            values[i] = mValues[index];
+            counts[i] = mCounts[index];
+        }
+        mTimes = times;
+        mValues = values;
+        mCounts = counts;
+        mHead = 0;
+    }
+
+    private void accumulate(long time, double value, int sign) {
+        double x = (time - mOrigin) / (double) HOUR_MS;
+        mSumX += sign * x;
+        mSumY += sign * value;
+        mSumXX += sign * x * x;
+        mSumXY += sign * x * value;
+    }
+
+    private void resum() {
+        mUpdatesSinceResum = 0;
+        mSumX = 0;
+        mSumY = 0;
+        mSumXX = 0;
+        mSumXY = 0;
+        if (mSize > 0) {
+            mOrigin = mTimes[mHead];
+        }
+        for (int i = 0; i < mSize; i++) {
+            int index = (mHead + i) % mTimes.length;
+            accumulate(mTimes[index], mValues[index], 1);
+        }
+    }
+}
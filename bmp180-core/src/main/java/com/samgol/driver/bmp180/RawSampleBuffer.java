@@ -0,0 +1,91 @@
+package com.samgol.driver.bmp180;
+
+/**
+ * Preallocated column store of uncompensated BMP180 samples: capture time, UT, UP and the
+ * oversampling mode, ten bytes of payload per row before any encoding.
+ * <p>
+ * Filled by {@link Bmp180#readRaw(RawSampleBuffer)} without any compensation work, and turned
+ * into physical values in one pass by {@link #compensate(Bmp180Compensation, int[], int[])}
+ * wherever the calibration of the capturing chip is known.
+ */
+public final class RawSampleBuffer {
+
+    private final long[] time;
+    private final int[] rawTemperature;
+    private final int[] rawPressure;
+    private final byte[] mode;
+    private int size;
+
+    public RawSampleBuffer(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("capacity must be positive: " + capacity);
+        }
+        time = new long[capacity];
+        rawTemperature = new int[capacity];
+        rawPressure = new int[capacity];
+        mode = new byte[capacity];
+    }
+
+    /**
+     * Appends a row.
+     *
+     * @param timeMillis     wall clock time of the conversion start, in milliseconds
+     * @param rawTemperature raw temperature
+     * @param rawPressure    raw pressure, scaled by the oversampling mode
+     * @param mode           oversampling mode of the pressure conversion
+     * @throws IllegalStateException if the buffer is full
+     */
+    public void add(long timeMillis, int rawTemperature, int rawPressure, int mode) {
+        if (size == time.length) {
+            throw new IllegalStateException("raw sample buffer is full: " + size);
+        }
+        time[size] = timeMillis;
+        this.rawTemperature[size] = rawTemperature;
+        this.rawPressure[size] = rawPressure;
+        this.mode[size] = (byte) mode;
+        size++;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int capacity() {
+        return time.length;
+    }
+
+    public boolean isFull() {
+        return size == time.length;
+    }
+
+    public void clear() {
+        size = 0;
+    }
+
+    public long getTime(int row) {
+        return time[row];
+    }
+
+    public int getRawTemperature(int row) {
+        return rawTemperature[row];
+    }
+
+    public int getRawPressure(int row) {
+        return rawPressure[row];
+    }
+
+    public int getMode(int row) {
+        return mode[row];
+    }
+
+    /**
+     * Compensates all rows in one pass.
+     *
+     * @param compensation      compensation of the chip that captured the rows
+     * @param pressure          receives the pressure in Pascal, at least {@link #size()} long
+     * @param temperatureTenths receives the temperature in tenths of a degree Celsius, may be null
+     */
+    public void compensate(Bmp180Compensation compensation, int[] pressure, int[] temperatureTenths) {
+        compensation.compensate(rawTemperature, rawPressure, mode, 0, size, pressure, temperatureTenths);
+    }
+}
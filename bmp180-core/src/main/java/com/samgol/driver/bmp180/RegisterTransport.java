@@ -0,0 +1,43 @@
+package com.samgol.driver.bmp180;
+
+import java.io.IOException;
+
+/**
+ * Register level access to a single device on a bus.
+ * <p>
+ * The driver talks to the chip only through this interface, so the bus can be the real I2C
+ * peripheral ({@code I2cDeviceTransport}) or a fake one such as {@link ReplayTransport}.
+ */
+public interface RegisterTransport extends AutoCloseable {
+
+    /**
+     * Reads a single byte from the register.
+     *
+     * @param register register address
+     * @return the unsigned register value
+     * @throws IOException if there was communication problem
+     */
+    int readRegByte(int register) throws IOException;
+
+    /**
+     * Reads consecutive registers in a single bus transaction.
+     *
+     * @param register first register address
+     * @param buffer   buffer receiving the register values
+     * @param length   number of bytes to read
+     * @throws IOException if there was communication problem
+     */
+    void readRegBuffer(int register, byte[] buffer, int length) throws IOException;
+
+    /**
+     * Writes a single byte to the register.
+     *
+     * @param register register address
+     * @param value    value to write
+     * @throws IOException if there was communication problem
+     */
+    void writeRegByte(int register, byte value) throws IOException;
+
+    @Override
+    void close() throws IOException;
+}
@@ -0,0 +1,221 @@
+package com.samgol.driver.bmp180;
+
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Fake BMP180 answering register reads from a raw sample trace.
+ * <p>
+ * Calibration registers return a fixed calibration block, temperature and pressure conversions
+ * return the next trace entry once the conversion time elapsed on the {@link Clock}. Gaussian
+ * noise and I/O faults can be injected to exercise the error paths.
+ */
+public class ReplayTransport implements RegisterTransport {
+
+    private static final int REG_CALIBRATION = 0xAA;
+    private static final int REG_CHIP_ID = 0xD0;
+    private static final int REG_CONTROL = 0xF4;
+    private static final int REG_DATA = 0xF6;
+    private static final int CHIP_ID = 0x55;
+
+    private static final int CMD_TEMPERATURE = 0x2E;
+    private static final int CMD_PRESSURE = 0x34;
+
+    private static final long TEMPERATURE_CONVERSION_NS = TimeUnit.MICROSECONDS.toNanos(4500);
+    private static final long[] PRESSURE_CONVERSION_NS = {
+            TimeUnit.MICROSECONDS.toNanos(4500),
+            TimeUnit.MICROSECONDS.toNanos(7500),
+            TimeUnit.MICROSECONDS.toNanos(13500),
+            TimeUnit.MICROSECONDS.toNanos(25500)};
+
+    /**
+     * Calibration block of the datasheet example, AC1..MD as big endian words.
+     */
+    public static final int[] DATASHEET_CALIBRATION = {
+            408, -72, -14383, 32741, 32757, 23153, 6190, 4, -32768, -8711, 2868};
+
+    private final Trace mTrace;
+    private final Clock mClock;
+    private final Random mRandom;
+    private final byte[] mCalibration = new byte[22];
+    private final byte[] mData = new byte[3];
+
+    private double mNoise;
+    private double mFaultRate;
+    private int mPosition;
+    private long mReadyAt;
+    private int mPendingCommand = -1;
+
+    private long mConversions;
+    private long mFaults;
+
+    /**
+     * @param trace raw samples to replay, wraps around at the end
+     * @param clock time source used to emulate conversion times
+     * @param seed  seed of the noise and fault generator
+     */
+    public ReplayTransport(Trace trace, Clock clock, long seed) {
+        mTrace = trace;
+        mClock = clock;
+        mRandom = new Random(seed);
+        setCalibration(DATASHEET_CALIBRATION);
+    }
+
+    /**
+     * @param words AC1..MD calibration words, as stored in the chip
+     */
+    public synchronized void setCalibration(int[] words) {
+        for (int i = 0; i < words.length && i < 11; i++) {
+            mCalibration[i * 2] = (byte) (words[i] >> 8);
+            mCalibration[i * 2 + 1] = (byte) words[i];
+        }
+    }
+
+    /**
+     * @param sigma standard deviation of the noise added to raw pressure, in ultra high res counts
+     */
+    public synchronized void setNoise(double sigma) {
+        mNoise = sigma;
+    }
+
+    /**
+     * @param rate probability of each bus transaction failing with an {@link IOException}
+     */
+    public synchronized void setFaultRate(double rate) {
+        mFaultRate = rate;
+    }
+
+    public synchronized long getConversions() {
+        return mConversions;
+    }
+
+    public synchronized long getFaults() {
+        return mFaults;
+    }
+
+    @Override
+    public synchronized int readRegByte(int register) throws IOException {
+        maybeFail();
+        return registerValue(register) & 0xFF;
+    }
+
+    @Override
+    public synchronized void readRegBuffer(int register, byte[] buffer, int length) throws IOException {
+        maybeFail();
+        for (int i = 0; i < length; i++) {
+            buffer[i] = registerValue(register + i);
+        }
+    }
+
+    @Override
+    public synchronized void writeRegByte(int register, byte value) throws IOException {
+        maybeFail();
+        if (register != REG_CONTROL) {
+            return;
+        }
+        int command = value & 0xFF;
+        if (command == CMD_TEMPERATURE) {
+            mReadyAt = mClock.nanoTime() + TEMPERATURE_CONVERSION_NS;
+        } else if ((command & 0x3F) == CMD_PRESSURE) {
+            mReadyAt = mClock.nanoTime() + PRESSURE_CONVERSION_NS[command >> 6];
+        } else {
+            return;
+        }
+        mPendingCommand = command;
+    }
+
+    @Override
+    public void close() {
+    }
+
+    private byte registerValue(int register) {
+        latchConversion();
+        if (register >= REG_CALIBRATION && register < REG_CALIBRATION + mCalibration.length) {
+            return mCalibration[register - REG_CALIBRATION];
+        }
+        if (register == REG_CHIP_ID) {
+            return (byte) CHIP_ID;
+        }
+        if (register >= REG_DATA && register < REG_DATA + mData.length) {
+            return mData[register - REG_DATA];
+        }
+        return 0;
+    }
+
+    /**
+     * Moves the result of a finished conversion into the data registers, like the chip does.
+     * Reading before the conversion time elapsed returns the previous result.
+     */
+    private void latchConversion() {
+        if (mPendingCommand < 0 || mClock.nanoTime() < mReadyAt) {
+            return;
+        }
+        int command = mPendingCommand;
+        mPendingCommand = -1;
+        mConversions++;
+        if (command == CMD_TEMPERATURE) {
+            int ut = mTrace.ut[mPosition];
+            mData[0] = (byte) (ut >> 8);
+            mData[1] = (byte) ut;
+        } else {
+            int oss = command >> 6;
+            double up = mTrace.up[mPosition] + mRandom.nextGaussian() * mNoise;
+            int value = ((int) Math.round(up) >> (3 - oss)) << (8 - oss);
+            mData[0] = (byte) (value >> 16);
+            mData[1] = (byte) (value >> 8);
+            mData[2] = (byte) value;
+            mPosition = (mPosition + 1) % mTrace.size();
+        }
+    }
+
+    private void maybeFail() throws IOException {
+        if (mFaultRate > 0 && mRandom.nextDouble() < mFaultRate) {
+            mFaults++;
+            throw new IOException("Injected bus fault");
+        }
+    }
+
+    /**
+     * Raw BMP180 samples: uncompensated temperature and pressure, the latter at ultra high
+     * resolution (19 bit) scale.
+     */
+    public static class Trace {
+        final int[] ut;
+        final int[] up;
+
+        public Trace(int[] ut, int[] up) {
+            if (ut.length != up.length || ut.length == 0) {
+                throw new IllegalArgumentException("ut and up must have the same, non zero length");
+            }
+            this.ut = ut;
+            this.up = up;
+        }
+
+        public int size() {
+            return ut.length;
+        }
+
+        /**
+         * Random walk around the datasheet example (15.0 C, 699.64 hPa).
+         *
+         * @param size number of samples
+         * @param seed seed of the walk
+         * @return synthetic trace
+         */
+        public static Trace synthetic(int size, long seed) {
+            Random random = new Random(seed);
+            int[] ut = new int[size];
+            int[] up = new int[size];
+            double temperature = 27898;
+            double pressure = 23843 << 3;
+            for (int i = 0; i < size; i++) {
+                temperature += random.nextGaussian() * 2;
+                pressure += random.nextGaussian() * 8;
+                ut[i] = (int) temperature;
+                up[i] = (int) pressure;
+            }
+            return new Trace(ut, up);
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package com.samgol.driver.bmp180;
+
+import java.io.IOException;
+
+/**
+ * Identifies the pressure sensor behind a register transport and creates its driver.
+ */
+public final class SensorProbe {
+
+    private SensorProbe() {
+    }
+
+    /**
+     * Identifies the chip behind the transport by its chip id register.
+     *
+     * @param transport register access to the chip
+     * @param clock     time source of the driver
+     * @return the driver, or null if the chip id is not supported
+     * @throws IOException if there was communication problem
+     */
+    public static PressureSensor open(RegisterTransport transport, Clock clock) throws IOException {
+        return open(transport, clock, null, null);
+    }
+
+    /**
+     * @param transport register access to the chip
+     * @param clock     time source of the driver
+     * @param store     where the BMP180 calibration is kept between opens, may be null
+     * @param busName   name of the bus, part of the calibration key
+     * @return the driver, or null if the chip id is not supported
+     * @throws IOException if there was communication problem
+     */
+    public static PressureSensor open(RegisterTransport transport, Clock clock, CalibrationStore store,
+                                      String busName) throws IOException {
+        int chipId = transport.readRegByte(Bmp180.BMP180_CHIP_ID_REGISTER);
+        switch (chipId) {
+            case Bmp180.BMP180_CHIP_ID:
+                return new Bmp180(transport, clock, store, busName);
+            case Bmp280.BMP280_CHIP_ID:
+            case Bmp280.BME280_CHIP_ID:
+                return new Bmp280(transport, clock);
+            default:
+                return null;
+        }
+    }
+}
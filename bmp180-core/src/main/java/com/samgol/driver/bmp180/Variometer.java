@@ -0,0 +1,274 @@
+package com.samgol.driver.bmp180;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Vertical speed from a BMP180 running back-to-back ultra low power conversions.
+ * <p>
+ * Every conversion bypasses the driver's read cache and waits out the exact datasheet conversion
+ * time; the temperature is converted only every {@link #TEMPERATURE_REFRESH} samples. Altitude
+ * and the alpha-beta filter run on the sampling thread outside the driver lock, and every
+ * estimate is delivered right away, so the latency from the start of the pressure conversion to
+ * the listener is about one conversion time. That latency is measured for every estimate.
+ * <p>
+ * Give the sensor {@link #CLOCK}, its conversion waits then end on time instead of after the
+ * timer slack of parking.
+ */
+public class Variometer {
+    private static final Logger LOG = Logger.getLogger(Variometer.class.getName());
+
+    public static final int TEMPERATURE_REFRESH = 16;
+    public static final float DEFAULT_ALPHA = 0.1f;
+    public static final float DEFAULT_BETA = 0.005f;
+
+    private static final int LATENCY_BUCKETS = 32;
+    private static final long ERROR_BACKOFF_MS = 100;
+    /**
+     * Tail of a wait that is spun rather than parked, covers the timer slack of parking.
+     */
+    private static final long SPIN_NANOS = 100000;
+
+    /**
+     * System time whose waits park until shortly before the deadline and spin for the rest. Burns
+     * CPU for up to 100 us per wait, worth it only for back-to-back conversions.
+     */
+    public static final Clock CLOCK = new Clock() {
+        @Override
+        public long nanoTime() {
+            return System.nanoTime();
+        }
+
+        @Override
+        public long currentTimeMillis() {
+            return System.currentTimeMillis();
+        }
+
+        @Override
+        public void sleep(long nanos) throws InterruptedException {
+            long deadline = System.nanoTime() + nanos;
+            long remaining = nanos;
+            while (remaining > 0) {
+                if (Thread.interrupted()) {
+                    throw new InterruptedException();
+                }
+                if (remaining > SPIN_NANOS) {
+                    LockSupport.parkNanos(remaining - SPIN_NANOS);
+                }
+                remaining = deadline - System.nanoTime();
+            }
+        }
+    };
+
+    public interface Listener {
+        /**
+         * Called on the sampling thread for every pressure conversion.
+         *
+         * @param sample         the sample the estimate was updated with
+         * @param altitude       filtered altitude in meters
+         * @param verticalSpeed  filtered vertical speed in meters per second, positive when climbing
+         * @param latencyNanos   time from the start of the conversion to this call
+         */
+        void onVerticalSpeed(PressureSample sample, float altitude, float verticalSpeed, long latencyNanos);
+    }
+
+    private final Bmp180 mSensor;
+    private final Clock mClock;
+    private final Listener mListener;
+    private final float mAlpha;
+    private final float mBeta;
+
+    private volatile float seaLevelPressure = 101325f;
+    private volatile boolean running;
+    private Thread mThread;
+
+    private boolean mHasEstimate;
+    private long mLastNanos;
+    private float mAltitude;
+    private float mVerticalSpeed;
+
+    private final long[] mLatencyBuckets = new long[LATENCY_BUCKETS];
+    private long mSamples;
+    private long mLatencySumNanos;
+    private long mMaxLatencyNanos;
+    private long mLastLatencyNanos;
+
+    /**
+     * @param sensor   the sensor, best created with {@link #CLOCK}
+     * @param listener receives the estimates
+     */
+    public Variometer(Bmp180 sensor, Listener listener) {
+        this(sensor, CLOCK, listener, DEFAULT_ALPHA, DEFAULT_BETA);
+    }
+
+    /**
+     * @param sensor   the sensor, switched to ultra low power with sparse temperature conversions
+     * @param clock    time source, must be the one of the sensor
+     * @param listener receives the estimates
+     * @param alpha    altitude gain of the filter, 0..1
+     * @param beta     vertical speed gain of the filter, 0..1, much smaller than alpha
+     */
+    public Variometer(Bmp180 sensor, Clock clock, Listener listener, float alpha, float beta) {
+        mSensor = sensor;
+        mClock = clock;
+        mListener = listener;
+        mAlpha = alpha;
+        mBeta = beta;
+        sensor.setMode(Bmp180.BMP180_ULTRA_LOW_POWER);
+        sensor.setTemperatureRefreshInterval(TEMPERATURE_REFRESH);
+    }
+
+    public void setSeaLevelPressure(float seaLevelPressure) {
+        this.seaLevelPressure = seaLevelPressure;
+    }
+
+    /**
+     * Starts sampling on a dedicated thread.
+     */
+    public synchronized void start() {
+        if (mThread != null) {
+            return;
+        }
+        running = true;
+        mThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                loop();
+            }
+        }, "Variometer");
+        mThread.setPriority(Thread.MAX_PRIORITY);
+        mThread.start();
+    }
+
+    /**
+     * Stops sampling and waits for the sampling thread to finish.
+     */
+    public void stop() throws InterruptedException {
+        Thread thread;
+        synchronized (this) {
+            thread = mThread;
+            mThread = null;
+            running = false;
+        }
+        if (thread != null) {
+            thread.join();
+        }
+    }
+
+    private void loop() {
+        while (running) {
+            try {
+                step();
+            } catch (IOException e) {
+                LOG.log(Level.WARNING, "conversion failed", e);
+                try {
+                    mClock.sleep(TimeUnit.MILLISECONDS.toNanos(ERROR_BACKOFF_MS));
+                } catch (InterruptedException interrupted) {
+                    return;
+                }
+            } catch (RuntimeException e) {
+                // a failing listener loses its estimate, not the sampling thread
+                LOG.log(Level.SEVERE, "listener failed", e);
+            }
+        }
+    }
+
+    /**
+     * Runs one conversion, updates the estimate and notifies the listener. Called by the sampling
+     * thread, or directly when driving the variometer from a test in virtual time.
+     *
+     * @throws IOException if there was communication problem
+     */
+    public void step() throws IOException {
+        PressureSample sample = mSensor.readSampleNow();
+        long now = sample.getBusCompleteNanos();
+        float measured = sample.getAltitude(seaLevelPressure);
+        float altitude;
+        float verticalSpeed;
+        synchronized (this) {
+            if (!mHasEstimate) {
+                mAltitude = measured;
+                mVerticalSpeed = 0f;
+                mHasEstimate = true;
+            } else {
+                float dt = (now - mLastNanos) / 1e9f;
+                if (dt > 0) {
+                    float predicted = mAltitude + mVerticalSpeed * dt;
+                    float residual = measured - predicted;
+                    mAltitude = predicted + mAlpha * residual;
+                    mVerticalSpeed += mBeta * residual / dt;
+                }
+            }
+            mLastNanos = now;
+            altitude = mAltitude;
+            verticalSpeed = mVerticalSpeed;
+        }
+        long latency = mClock.nanoTime() - sample.getConversionStartNanos();
+        recordLatency(latency);
+        mListener.onVerticalSpeed(sample, altitude, verticalSpeed, latency);
+    }
+
+    private synchronized void recordLatency(long nanos) {
+        mSamples++;
+        mLatencySumNanos += nanos;
+        mLastLatencyNanos = nanos;
+        if (nanos > mMaxLatencyNanos) {
+            mMaxLatencyNanos = nanos;
+        }
+        long micros = Math.max(1, TimeUnit.NANOSECONDS.toMicros(nanos));
+        mLatencyBuckets[Math.min(LATENCY_BUCKETS - 1, 63 - Long.numberOfLeadingZeros(micros))]++;
+    }
+
+    public synchronized float getAltitude() {
+        return mAltitude;
+    }
+
+    public synchronized float getVerticalSpeed() {
+        return mVerticalSpeed;
+    }
+
+    public synchronized long getSamples() {
+        return mSamples;
+    }
+
+    /**
+     * @return latency of the latest estimate, from the start of its conversion, in nanoseconds
+     */
+    public synchronized long getLastLatencyNanos() {
+        return mLastLatencyNanos;
+    }
+
+    public synchronized long getMeanLatencyNanos() {
+        return mSamples == 0 ? 0 : mLatencySumNanos / mSamples;
+    }
+
+    public synchronized long getMaxLatencyNanos() {
+        return mMaxLatencyNanos;
+    }
+
+    /**
+     * @param percentile 0..100
+     * @return upper bound of the latency percentile, in microseconds, with power of two resolution
+     */
+    public synchronized long getLatencyPercentileMicros(double percentile) {
+        long threshold = (long) Math.ceil(mSamples * percentile / 100.0);
+        long seen = 0;
+        for (int i = 0; i < LATENCY_BUCKETS; i++) {
+            seen += mLatencyBuckets[i];
+            if (seen >= threshold && seen > 0) {
+                return (1L << (i + 1)) - 1;
+            }
+        }
+        return 0;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "Variometer(altitude=" + mAltitude + "m, verticalSpeed=" + mVerticalSpeed + "m/s, samples=" + mSamples
+                + ", latency mean=" + TimeUnit.NANOSECONDS.toMicros(getMeanLatencyNanos()) + "us p99<="
+                + getLatencyPercentileMicros(99) + "us max=" + TimeUnit.NANOSECONDS.toMicros(mMaxLatencyNanos) + "us)";
+    }
+}
@@ -0,0 +1,43 @@
+package com.samgol.driver.bmp180;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link Clock} that never blocks, {@link #sleep(long)} just moves the time forward.
+ * Useful to run the driver against {@link ReplayTransport} much faster than real time.
+ */
+public class VirtualClock implements Clock {
+
+    private final long mEpochMillis;
+    private long mNanos;
+
+    public VirtualClock(long epochMillis) {
+        mEpochMillis = epochMillis;
+    }
+
+    @Override
+    public synchronized long nanoTime() {
+        return mNanos;
+    }
+
+    @Override
+    public synchronized long currentTimeMillis() {
+        return mEpochMillis + TimeUnit.NANOSECONDS.toMillis(mNanos);
+    }
+
+    @Override
+    public synchronized void sleep(long nanos) {
+        advance(nanos);
+    }
+
+    /**
+     * Moves the time forward.
+     *
+     * @param nanos time to add in nanoseconds
+     */
+    public synchronized void advance(long nanos) {
+        if (nanos > 0) {
+            mNanos += nanos;
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package com.samgol.driver.bmp180;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.zip.CRC32;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class Bmp180CalibrationTest {
+
+    @Test
+    public void datasheetBlock_decodesSignedAndUnsignedWords() throws Exception {
+        Bmp180Calibration calibration = Bmp180Calibration.fromBlock(datasheetBlock());
+
+        assertEquals(408, calibration.ac1());
+        assertEquals(-72, calibration.ac2());
+        assertEquals(-14383, calibration.ac3());
+        assertEquals(32741, calibration.ac4());
+        assertEquals(-32768, calibration.mb());
+        assertEquals(2868, calibration.md());
+    }
+
+    @Test
+    public void erasedOrFloatingWords_areRejected() throws Exception {
+        for (int word = 0; word < 11; word++) {
+            for (int value : new int[]{0x00, 0xFF}) {
+                byte[] block = datasheetBlock();
+                block[word * 2] = (byte) value;
+                block[word * 2 + 1] = (byte) value;
+                try {
+                    Bmp180Calibration.fromBlock(block);
+                    fail("word " + word + " = 0x" + Integer.toHexString(value * 0x101));
+                } catch (IOException e) {
+                    // expected
+                }
+            }
+        }
+        try {
+            Bmp180Calibration.fromBlock(new byte[Bmp180Calibration.LENGTH - 1]);
+            fail("short block");
+        } catch (IOException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void checksum_isCrc32OfTheBlockAndSeesEveryByte() throws Exception {
+        byte[] block = datasheetBlock();
+        CRC32 crc = new CRC32();
+        crc.update(block);
+        Bmp180Calibration calibration = Bmp180Calibration.fromBlock(block);
+        assertEquals(crc.getValue(), calibration.checksum());
+
+        block[21] ^= 1;
+        Bmp180Calibration changed = Bmp180Calibration.fromBlock(block);
+        assertTrue(changed.checksum() != calibration.checksum());
+        assertTrue(!changed.equals(calibration));
+    }
+
+    static byte[] datasheetBlock() {
+        int[] words = ReplayTransport.DATASHEET_CALIBRATION;
+        byte[] block = new byte[Bmp180Calibration.LENGTH];
+        for (int i = 0; i < words.length; i++) {
+            block[i * 2] = (byte) (words[i] >> 8);
+            block[i * 2 + 1] = (byte) words[i];
+        }
+        return block;
+    }
+}
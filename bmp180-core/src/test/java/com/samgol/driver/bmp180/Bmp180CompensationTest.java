@@ -0,0 +1,23 @@
+package com.samgol.driver.bmp180;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class Bmp180CompensationTest {
+
+    /**
+     * The datasheet example compensates to 69964 Pa. The driver before the core split returned
+     * 69963 Pa because its B7 comparison always took the truncating branch.
+     */
+    @Test
+    public void datasheetExample_keepsTheLowBitOfB7() throws Exception {
+        Bmp180Compensation compensation = new Bmp180Compensation(
+                Bmp180Calibration.fromBlock(Bmp180CalibrationTest.datasheetBlock()));
+
+        int b5 = compensation.b5(27898);
+
+        assertEquals(150, Bmp180Compensation.temperatureTenths(b5));
+        assertEquals(69964, compensation.pressure(b5, 23843, Bmp180.BMP180_ULTRA_LOW_POWER));
+    }
+}
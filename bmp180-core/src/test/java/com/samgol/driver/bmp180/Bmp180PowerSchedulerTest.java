@@ -0,0 +1,101 @@
+package com.samgol.driver.bmp180;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class Bmp180PowerSchedulerTest {
+
+    // the station runs on a 0.5 uA budget, sampling every minute or every 10 minutes
+    private static final float POWER_BUDGET_UA = 0.5f;
+    private static final long FAST_INTERVAL_MS = TimeUnit.MINUTES.toMillis(1);
+    private static final long SLOW_INTERVAL_MS = TimeUnit.MINUTES.toMillis(10);
+    // about 3 Pa RMS, the ultra high resolution noise of the datasheet
+    private static final double NOISE = 8;
+    private static final int UT = 27898;
+    private static final int UP = 23843 << 3;
+
+    @Test
+    public void steadyNoisyPressure_staysLowPowerAndSlow() throws Exception {
+        int[] ut = {UT};
+        int[] up = {UP};
+        Station station = new Station(new ReplayTransport.Trace(ut, up));
+
+        for (int i = 0; i < 24 * 6; i++) {
+            station.sample();
+            assertFalse(station.scheduler.toString(), station.scheduler.isChanging());
+        }
+
+        assertEquals(Bmp180.BMP180_ULTRA_LOW_POWER, station.scheduler.getMode());
+        assertEquals(SLOW_INTERVAL_MS, station.scheduler.getSampleIntervalMillis());
+        assertTrue(station.scheduler.toString(), Math.abs(station.scheduler.getRatePaPerMinute()) < 0.5f);
+        assertTrue(station.scheduler.toString(), station.scheduler.getModelledAverageCurrentUa() <= POWER_BUDGET_UA);
+    }
+
+    @Test
+    public void pressureTrend_promotesModeUntilPressureSettles() throws Exception {
+        // 2 hours steady, then 2 Pa/min at the slow interval for 60 samples, then steady again
+        int size = 12 + 60 + 1000;
+        int[] ut = new int[size];
+        int[] up = new int[size];
+        for (int i = 0; i < size; i++) {
+            ut[i] = UT;
+            up[i] = UP + 53 * Math.max(0, Math.min(60, i - 12));
+        }
+        Station station = new Station(new ReplayTransport.Trace(ut, up));
+
+        int promotedAt = -1;
+        for (int i = 0; i < 30 && promotedAt < 0; i++) {
+            station.sample();
+            if (station.scheduler.isChanging()) {
+                promotedAt = i;
+            }
+        }
+        assertTrue(station.scheduler.toString(), promotedAt > 12 && promotedAt <= 15);
+        assertEquals(Bmp180.BMP180_ULTRA_HIGH_RES, station.scheduler.getMode());
+        assertEquals(FAST_INTERVAL_MS, station.scheduler.getSampleIntervalMillis());
+
+        // the ramp lasts until sample 72, the rate decays over the window after it
+        int settledAt = -1;
+        for (int i = promotedAt + 1; i < 200 && settledAt < 0; i++) {
+            station.sample();
+            if (!station.scheduler.isChanging()) {
+                settledAt = i;
+            }
+        }
+        assertTrue(station.scheduler.toString(), settledAt > 72);
+        assertEquals(Bmp180.BMP180_ULTRA_LOW_POWER, station.scheduler.getMode());
+        assertEquals(SLOW_INTERVAL_MS, station.scheduler.getSampleIntervalMillis());
+
+        for (int i = 0; i < 12; i++) {
+            station.sample();
+            assertFalse(station.scheduler.toString(), station.scheduler.isChanging());
+        }
+        assertTrue(station.scheduler.toString(), station.scheduler.getModelledAverageCurrentUa() <= POWER_BUDGET_UA);
+    }
+
+    /**
+     * Samples the replayed sensor whenever the scheduler plans the next sample.
+     */
+    private static class Station {
+        final VirtualClock clock = new VirtualClock(1484784000000L);
+        final Bmp180 bmp180;
+        final Bmp180PowerScheduler scheduler;
+
+        Station(ReplayTransport.Trace trace) {
+            ReplayTransport transport = new ReplayTransport(trace, clock, 3);
+            transport.setNoise(NOISE);
+            bmp180 = new Bmp180(transport, clock);
+            scheduler = new Bmp180PowerScheduler(bmp180, POWER_BUDGET_UA, FAST_INTERVAL_MS, SLOW_INTERVAL_MS, clock);
+        }
+
+        void sample() throws Exception {
+            clock.advance(TimeUnit.MILLISECONDS.toNanos(scheduler.getSampleIntervalMillis()));
+            scheduler.onSample(bmp180.readSample().getPressure());
+        }
+    }
+}
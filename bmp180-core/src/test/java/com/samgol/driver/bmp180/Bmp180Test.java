@@ -0,0 +1,64 @@
+package com.samgol.driver.bmp180;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Runs the driver against the worked example of the BMP180 datasheet: UT = 27898 and UP = 23843
+ * in ultra low power mode give 15.0 degrees Celsius and 69964 Pa.
+ */
+public class Bmp180Test {
+
+    @Test
+    public void datasheetExample() throws Exception {
+        VirtualClock clock = new VirtualClock(1484784000000L);
+        ReplayTransport.Trace trace = new ReplayTransport.Trace(new int[]{27898}, new int[]{23843 << 3});
+        Bmp180 bmp180 = new Bmp180(new ReplayTransport(trace, clock, 0), clock);
+        bmp180.setMode(Bmp180.BMP180_ULTRA_LOW_POWER);
+
+        PressureSample sample = bmp180.readSample();
+
+        assertEquals(27898, sample.getRawTemperature());
+        assertEquals(23843, sample.getRawPressure());
+        assertEquals(15.0f, sample.getTemperature(), 0f);
+        assertEquals(69964, sample.getPressure());
+        bmp180.close();
+    }
+
+    @Test
+    public void failedCalibrationAtOpen_isReadAgainOnNextSample() throws Exception {
+        VirtualClock clock = new VirtualClock(1484784000000L);
+        ReplayTransport.Trace trace = new ReplayTransport.Trace(new int[]{27898}, new int[]{23843 << 3});
+        ReplayTransport transport = new ReplayTransport(trace, clock, 0);
+        transport.setFaultRate(1.0);
+        Bmp180 bmp180 = new Bmp180(transport, clock);
+        assertEquals(null, bmp180.getCalibration());
+
+        transport.setFaultRate(0.0);
+        bmp180.setMode(Bmp180.BMP180_ULTRA_LOW_POWER);
+
+        assertEquals(69964, bmp180.readSample().getPressure());
+        assertTrue(bmp180.getCalibration() != null);
+        bmp180.close();
+    }
+
+    @Test
+    public void temperatureRead_doesNotLeakItsStartIntoNextSample() throws Exception {
+        VirtualClock clock = new VirtualClock(1484784000000L);
+        ReplayTransport.Trace trace = new ReplayTransport.Trace(new int[]{27898}, new int[]{23843 << 3});
+        Bmp180 bmp180 = new Bmp180(new ReplayTransport(trace, clock, 0), clock);
+
+        assertEquals(15.0f, bmp180.readTemperature(), 0f);
+        clock.advance(TimeUnit.SECONDS.toNanos(10));
+        long beforeSample = clock.nanoTime();
+        PressureSample sample = bmp180.readSample();
+
+        assertTrue(sample.getConversionStartNanos() >= beforeSample);
+        assertTrue(sample.getBusCompleteNanos() - sample.getConversionStartNanos() < TimeUnit.MILLISECONDS.toNanos(50));
+        bmp180.close();
+    }
+}
@@ -0,0 +1,82 @@
+package com.samgol.driver.bmp180;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Runs the driver against the compensation example of the BMP280 datasheet: adc_T = 519888 and
+ * adc_P = 415148 give 25.08 degrees Celsius and 100653 Pa.
+ */
+public class Bmp280Test {
+
+    private static final int[] DATASHEET_CALIBRATION = {
+            27504, 26435, -1000, 36477, -10685, 3024, 2855, 140, -7, 15500, -14600, 6000};
+
+    @Test
+    public void datasheetExample() throws Exception {
+        VirtualClock clock = new VirtualClock(1484784000000L);
+        Bmp280 bmp280 = new Bmp280(new RegisterMapTransport(519888, 415148), clock);
+
+        PressureSample sample = bmp280.readSample();
+
+        assertEquals(519888, sample.getRawTemperature());
+        assertEquals(415148, sample.getRawPressure());
+        assertEquals(25.1f, sample.getTemperature(), 0f);
+        assertEquals(100653, sample.getPressure());
+        assertEquals("BMP280", bmp280.getChipName());
+        assertEquals(Bmp180.BMP180_ULTRA_HIGH_RES, sample.getMode());
+        bmp280.close();
+    }
+
+    @Test
+    public void oversampling_mapsToBmp180Mode() throws Exception {
+        assertEquals(Bmp180.BMP180_ULTRA_LOW_POWER, Bmp280.bmp180Mode(Bmp280.OVERSAMPLING_1X));
+        assertEquals(Bmp180.BMP180_STANDARD, Bmp280.bmp180Mode(Bmp280.OVERSAMPLING_2X));
+        assertEquals(Bmp180.BMP180_HIGH_RES, Bmp280.bmp180Mode(Bmp280.OVERSAMPLING_4X));
+        assertEquals(Bmp180.BMP180_ULTRA_HIGH_RES, Bmp280.bmp180Mode(Bmp280.OVERSAMPLING_8X));
+        assertEquals(Bmp180.BMP180_ULTRA_HIGH_RES, Bmp280.bmp180Mode(Bmp280.OVERSAMPLING_16X));
+    }
+
+    /**
+     * BMP280 register file holding the datasheet calibration and one fixed conversion result.
+     */
+    private static class RegisterMapTransport implements RegisterTransport {
+        private final byte[] mRegisters = new byte[256];
+
+        RegisterMapTransport(int adcT, int adcP) {
+            mRegisters[Bmp280.BMP280_CHIP_ID_REGISTER] = (byte) Bmp280.BMP280_CHIP_ID;
+            for (int i = 0; i < DATASHEET_CALIBRATION.length; i++) {
+                mRegisters[0x88 + i * 2] = (byte) DATASHEET_CALIBRATION[i];
+                mRegisters[0x89 + i * 2] = (byte) (DATASHEET_CALIBRATION[i] >> 8);
+            }
+            put20(0xF7, adcP);
+            put20(0xFA, adcT);
+        }
+
+        private void put20(int register, int value) {
+            mRegisters[register] = (byte) (value >> 12);
+            mRegisters[register + 1] = (byte) (value >> 4);
+            mRegisters[register + 2] = (byte) (value << 4);
+        }
+
+        @Override
+        public int readRegByte(int register) {
+            return mRegisters[register] & 0xFF;
+        }
+
+        @Override
+        public void readRegBuffer(int register, byte[] buffer, int length) {
+            System.arraycopy(mRegisters, register, buffer, 0, length);
+        }
+
+        @Override
+        public void writeRegByte(int register, byte value) {
+            mRegisters[register] = value;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package com.samgol.driver.bmp180;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.zip.CRC32;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class FileCalibrationStoreTest {
+
+    private static final String KEY = "I2C1/0x77/0x55";
+
+    @Rule
+    public TemporaryFolder mFolder = new TemporaryFolder();
+
+    @Test
+    public void saved_isLoadedBack() throws Exception {
+        FileCalibrationStore store = new FileCalibrationStore(mFolder.getRoot());
+        Bmp180Calibration calibration = Bmp180Calibration.fromBlock(Bmp180CalibrationTest.datasheetBlock());
+
+        store.save(KEY, calibration);
+
+        assertEquals(calibration, new FileCalibrationStore(mFolder.getRoot()).load(KEY));
+    }
+
+    @Test
+    public void save_replacesTheFileThroughARename() throws Exception {
+        FileCalibrationStore store = new FileCalibrationStore(mFolder.getRoot());
+        byte[] block = Bmp180CalibrationTest.datasheetBlock();
+        store.save(KEY, Bmp180Calibration.fromBlock(block));
+        block[21] ^= 1;
+        Bmp180Calibration second = Bmp180Calibration.fromBlock(block);
+
+        // leftover of a save interrupted before its rename
+        File file = onlyFile();
+        write(new File(mFolder.getRoot(), file.getName() + ".tmp"), new byte[5]);
+        store.save(KEY, second);
+
+        assertEquals(second, store.load(KEY));
+        assertEquals(file, onlyFile());
+    }
+
+    @Test
+    public void checksumMismatch_isIgnored() throws Exception {
+        FileCalibrationStore store = new FileCalibrationStore(mFolder.getRoot());
+        store.save(KEY, Bmp180Calibration.fromBlock(Bmp180CalibrationTest.datasheetBlock()));
+
+        RandomAccessFile file = new RandomAccessFile(onlyFile(), "rw");
+        try {
+            file.seek(3);
+            int value = file.read();
+            file.seek(3);
+            file.write(value ^ 0x10);
+        } finally {
+            file.close();
+        }
+
+        assertNull(store.load(KEY));
+    }
+
+    @Test
+    public void missingTruncatedOrInvalidFile_isIgnored() throws Exception {
+        FileCalibrationStore store = new FileCalibrationStore(mFolder.getRoot());
+        assertNull(store.load(KEY));
+
+        store.save(KEY, Bmp180Calibration.fromBlock(Bmp180CalibrationTest.datasheetBlock()));
+        File file = onlyFile();
+        write(file, new byte[Bmp180Calibration.LENGTH + 3]);
+        assertNull(store.load(KEY));
+
+        // erased block with a matching checksum still fails the word validation
+        byte[] erased = new byte[Bmp180Calibration.LENGTH];
+        CRC32 crc = new CRC32();
+        crc.update(erased);
+        byte[] content = new byte[Bmp180Calibration.LENGTH + 8];
+        long checksum = crc.getValue();
+        for (int i = 0; i < 8; i++) {
+            content[Bmp180Calibration.LENGTH + i] = (byte) (checksum >> (56 - i * 8));
+        }
+        write(file, content);
+        assertNull(store.load(KEY));
+    }
+
+    private File onlyFile() {
+        File[] files = mFolder.getRoot().listFiles();
+        assertEquals(1, files.length);
+        return files[0];
+    }
+
+    private static void write(File file, byte[] content) throws IOException {
+        FileOutputStream out = new FileOutputStream(file);
+        try {
+            out.write(content);
+        } finally {
+            out.close();
+        }
+    }
+}
@@ -0,0 +1,335 @@
+package com.samgol.driver.bmp180;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class I2cBusSchedulerTest {
+
+    @Test
+    public void pendingTransactions_runByPriorityThenDeadline() throws Exception {
+        I2cBusScheduler bus = new I2cBusScheduler("I2C1");
+        List<String> order = Collections.synchronizedList(new ArrayList<String>());
+        I2cBusScheduler.Client low = bus.register("low", new FakeDevice("low", order, 0), I2cBusScheduler.PRIORITY_LOW, 1000);
+        I2cBusScheduler.Client late = bus.register("late", new FakeDevice("late", order, 0), I2cBusScheduler.PRIORITY_NORMAL, 500);
+        I2cBusScheduler.Client early = bus.register("early", new FakeDevice("early", order, 0), I2cBusScheduler.PRIORITY_NORMAL, 100);
+        I2cBusScheduler.Client high = bus.register("high", new FakeDevice("high", order, 0), I2cBusScheduler.PRIORITY_HIGH, 1000);
+
+        bus.pause();
+        List<Thread> threads = new ArrayList<>();
+        for (I2cBusScheduler.Client client : Arrays.asList(low, late, early, high)) {
+            threads.add(write(client));
+        }
+        for (int i = 0; i < 200 && bus.getQueueLength() < 4; i++) {
+            Thread.sleep(5);
+        }
+        assertEquals(4, bus.getQueueLength());
+        bus.resume();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertEquals(Arrays.asList("high", "early", "late", "low"), order);
+        assertEquals(4, bus.getTransactions());
+        assertEquals(1, high.getTransactions());
+        assertTrue(bus.report(), low.getMaxQueueDelayNanos() >= high.getMaxQueueDelayNanos());
+        bus.close();
+    }
+
+    @Test
+    public void overdueTransaction_runsBeforeHigherPriority() throws Exception {
+        I2cBusScheduler bus = new I2cBusScheduler("I2C1");
+        List<String> order = Collections.synchronizedList(new ArrayList<String>());
+        I2cBusScheduler.Client low = bus.register("low", new FakeDevice("low", order, 0), I2cBusScheduler.PRIORITY_LOW, 1);
+        I2cBusScheduler.Client high = bus.register("high", new FakeDevice("high", order, 0), I2cBusScheduler.PRIORITY_HIGH, 1000);
+
+        bus.pause();
+        Thread lowWrite = write(low);
+        for (int i = 0; i < 200 && bus.getQueueLength() < 1; i++) {
+            Thread.sleep(5);
+        }
+        Thread highWrite = write(high);
+        for (int i = 0; i < 200 && bus.getQueueLength() < 2; i++) {
+            Thread.sleep(5);
+        }
+        Thread.sleep(5);
+        bus.resume();
+        lowWrite.join();
+        highWrite.join();
+
+        assertEquals(Arrays.asList("low", "high"), order);
+        bus.close();
+    }
+
+    @Test
+    public void busyHighPriorityClients_doNotStarveLowPriority() throws Exception {
+        final I2cBusScheduler bus = new I2cBusScheduler("I2C1");
+        List<String> order = Collections.synchronizedList(new ArrayList<String>());
+        List<Thread> hogs = new ArrayList<>();
+        for (int i = 0; i < 2; i++) {
+            hogs.add(hog(bus.register("hog" + i, new FakeDevice(null, order, 200), I2cBusScheduler.PRIORITY_HIGH, 1000)));
+        }
+        final I2cBusScheduler.Client low = bus.register("low", new FakeDevice("low", order, 0), I2cBusScheduler.PRIORITY_LOW, 5);
+
+        // with strict priority the two hogs keep a transaction queued at all times
+        Thread writes = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    for (int i = 0; i < 50; i++) {
+                        low.writeRegByte(0x00, (byte) 1);
+                    }
+                } catch (IOException e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+        });
+        writes.start();
+        writes.join(TimeUnit.SECONDS.toMillis(10));
+        boolean starved = writes.isAlive();
+        for (Thread hog : hogs) {
+            hog.interrupt();
+        }
+        bus.close();
+        for (Thread hog : hogs) {
+            hog.join();
+        }
+        writes.join();
+
+        String report = bus.report();
+        assertFalse(report, starved);
+        assertEquals(50, order.size());
+        assertTrue(report, low.getMaxQueueDelayNanos() < TimeUnit.MILLISECONDS.toNanos(100));
+    }
+
+    @Test
+    public void closingClient_failsItsPendingTransactionsAndClosesDeviceOnBusThread() throws Exception {
+        I2cBusScheduler bus = new I2cBusScheduler("I2C1");
+        List<String> order = Collections.synchronizedList(new ArrayList<String>());
+        FakeDevice device = new FakeDevice("sensor", order, 0);
+        final I2cBusScheduler.Client client = bus.register("sensor", device, I2cBusScheduler.PRIORITY_NORMAL, 1000);
+        final AtomicReference<IOException> failure = new AtomicReference<>();
+
+        bus.pause();
+        Thread writer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    client.writeRegByte(0xF4, (byte) 0x2E);
+                } catch (IOException e) {
+                    failure.set(e);
+                }
+            }
+        });
+        writer.start();
+        for (int i = 0; i < 200 && bus.getQueueLength() < 1; i++) {
+            Thread.sleep(5);
+        }
+        Thread closer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    client.close();
+                } catch (IOException e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+        });
+        closer.start();
+        writer.join();
+
+        // the write failed without touching the device, the close waits for the bus
+        assertTrue(failure.get() != null && !(failure.get() instanceof InterruptedIOException));
+        assertEquals(1, bus.getQueueLength());
+        assertEquals(null, device.getClosedOn());
+        bus.resume();
+        closer.join();
+
+        assertEquals("I2cBus-I2C1", device.getClosedOn());
+        assertTrue(order.isEmpty());
+        assertEquals(0, client.getTransactions());
+        assertTrue(bus.getClients().isEmpty());
+        try {
+            client.readRegByte(0xD0);
+            fail("read after close");
+        } catch (IOException e) {
+            // expected
+        }
+        assertTrue(order.isEmpty());
+        bus.close();
+    }
+
+    @Test
+    public void conversionWait_leavesBusToOtherClients() throws Exception {
+        final I2cBusScheduler bus = new I2cBusScheduler("I2C1");
+        List<String> order = Collections.synchronizedList(new ArrayList<String>());
+        final I2cBusScheduler.Client display = bus.register("display", new FakeDevice(null, order, 200), I2cBusScheduler.PRIORITY_LOW, 50);
+        I2cBusScheduler.Client sensor = bus.register("bmp180",
+                new ReplayTransport(ReplayTransport.Trace.synthetic(64, 1), Clock.SYSTEM, 0), I2cBusScheduler.PRIORITY_HIGH, 5);
+        Bmp180 bmp180 = new Bmp180(sensor, Clock.SYSTEM);
+        bmp180.setMode(Bmp180.BMP180_ULTRA_HIGH_RES);
+
+        Thread refresh = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    while (!Thread.currentThread().isInterrupted()) {
+                        display.writeRegByte(0x40, (byte) 0);
+                    }
+                } catch (IOException e) {
+                    // bus closed or interrupted
+                }
+            }
+        });
+        refresh.start();
+
+        for (int i = 0; i < 20; i++) {
+            PressureSample sample = bmp180.readSampleNow();
+            assertTrue("pressure " + sample.getPressure(), sample.getPressure() > 30000 && sample.getPressure() < 110000);
+        }
+        refresh.interrupt();
+        refresh.join();
+
+        String report = bus.report();
+        assertTrue(report, display.getTransactions() > 500);
+        assertTrue(report, sensor.getMaxQueueDelayNanos() < TimeUnit.MILLISECONDS.toNanos(20));
+        assertTrue(report, bus.getUtilization() > 0.3f);
+        assertTrue(report, report.contains("bmp180(") && report.contains("display("));
+        bus.close();
+    }
+
+    @Test
+    public void interruptedCaller_cancelsItsRead() throws Exception {
+        I2cBusScheduler bus = new I2cBusScheduler("I2C1");
+        List<String> order = Collections.synchronizedList(new ArrayList<String>());
+        final I2cBusScheduler.Client client = bus.register("sensor", new FakeDevice("sensor", order, 0), I2cBusScheduler.PRIORITY_NORMAL, 10);
+        final byte[] buffer = new byte[3];
+        final AtomicReference<IOException> failure = new AtomicReference<>();
+
+        bus.pause();
+        Thread reader = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    client.readRegBuffer(0xF6, buffer, buffer.length);
+                } catch (IOException e) {
+                    failure.set(e);
+                }
+            }
+        });
+        reader.start();
+        for (int i = 0; i < 200 && bus.getQueueLength() < 1; i++) {
+            Thread.sleep(5);
+        }
+        reader.interrupt();
+        reader.join();
+        bus.resume();
+        client.writeRegByte(0xF4, (byte) 0x2E);
+
+        assertTrue(failure.get() instanceof InterruptedIOException);
+        assertEquals(0, bus.getQueueLength());
+        assertEquals(Collections.singletonList("sensor"), order);
+        assertEquals(1, client.getTransactions());
+        assertTrue(Arrays.equals(new byte[3], buffer));
+        bus.close();
+    }
+
+    private static Thread hog(final I2cBusScheduler.Client client) {
+        Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    while (!Thread.currentThread().isInterrupted()) {
+                        client.writeRegByte(0x40, (byte) 0);
+                    }
+                } catch (IOException e) {
+                    // bus closed or interrupted
+                }
+            }
+        });
+        thread.start();
+        return thread;
+    }
+
+    private static Thread write(final I2cBusScheduler.Client client) {
+        Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    client.writeRegByte(0x00, (byte) 1);
+                } catch (IOException e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+        });
+        thread.start();
+        return thread;
+    }
+
+    /**
+     * Device whose every access keeps the bus busy for a while, and optionally records its name.
+     */
+    private static class FakeDevice implements RegisterTransport {
+        private final String mName;
+        private final List<String> mOrder;
+        private final long mBusyNanos;
+        private volatile String mClosedOn;
+
+        FakeDevice(String name, List<String> order, long busyMicros) {
+            mName = name;
+            mOrder = order;
+            mBusyNanos = TimeUnit.MICROSECONDS.toNanos(busyMicros);
+        }
+
+        String getClosedOn() {
+            return mClosedOn;
+        }
+
+        private void access() {
+            if (mClosedOn != null) {
+                throw new IllegalStateException("device closed");
+            }
+            if (mName != null) {
+                mOrder.add(mName);
+            }
+            long end = System.nanoTime() + mBusyNanos;
+            while (System.nanoTime() < end) {
+                // clocking bytes out
+            }
+        }
+
+        @Override
+        public int readRegByte(int register) {
+            access();
+            return 0;
+        }
+
+        @Override
+        public void readRegBuffer(int register, byte[] buffer, int length) {
+            access();
+            Arrays.fill(buffer, 0, length, (byte) 0x5A);
+        }
+
+        @Override
+        public void writeRegByte(int register, byte value) {
+            access();
+        }
+
+        @Override
+        public void close() {
+            mClosedOn = Thread.currentThread().getName();
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package com.samgol.driver.bmp180;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void percentiles_areBucketUpperBoundsCappedByMax() throws Exception {
+        LatencyHistogram histogram = new LatencyHistogram("bus");
+        assertEquals(0, histogram.percentile(0.5));
+        for (int i = 0; i < 98; i++) {
+            histogram.record(100);
+        }
+        histogram.record(5000);
+        histogram.record(-3);
+
+        assertEquals(100, histogram.getCount());
+        assertEquals(127, histogram.percentile(0.5));
+        assertEquals(127, histogram.percentile(0.99));
+        assertEquals(5000, histogram.percentile(1.0));
+        assertEquals("bus: n=100 mean=148us p50<=127us p99<=127us max=5000us", histogram.toString());
+    }
+}
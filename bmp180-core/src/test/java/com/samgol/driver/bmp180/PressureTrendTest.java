@@ -0,0 +1,51 @@
+package com.samgol.driver.bmp180;
+
+import org.junit.Test;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class PressureTrendTest {
+
+    private static final long WINDOW_MS = TimeUnit.HOURS.toMillis(3);
+
+    @Test
+    public void linearRamp_rateIsItsSlope() throws Exception {
+        PressureTrend trend = new PressureTrend(WINDOW_MS, 16);
+        assertTrue(Double.isNaN(trend.getRatePerHour()));
+        for (long t = 0; t <= TimeUnit.HOURS.toMillis(2); t += TimeUnit.MINUTES.toMillis(1)) {
+            trend.add(t, 1000.0 - 1.5 * t / TimeUnit.HOURS.toMillis(1));
+        }
+        assertEquals(121, trend.size());
+        assertEquals(TimeUnit.HOURS.toMillis(2), trend.getSpanMillis());
+        assertEquals(-1.5, trend.getRatePerHour(), 1e-9);
+    }
+
+    @Test
+    public void fastNoisySamples_keepMemoryBoundedAndTheWholeWindow() throws Exception {
+        PressureTrend trend = new PressureTrend(WINDOW_MS, 256);
+        Random random = new Random(7);
+        // 50 Hz for 4 hours would be 720000 entries without bucketing
+        for (long t = 0; t <= TimeUnit.HOURS.toMillis(4); t += 20) {
+            trend.add(t, 1000.0 + 2.0 * t / TimeUnit.HOURS.toMillis(1) + random.nextGaussian() * 0.03);
+        }
+        assertEquals(PressureTrend.MAX_SAMPLES, trend.getCapacity());
+        assertTrue("size " + trend.size(), trend.size() <= PressureTrend.MAX_SAMPLES);
+        assertTrue("span " + trend.getSpanMillis(), trend.getSpanMillis() > WINDOW_MS - TimeUnit.SECONDS.toMillis(10));
+        assertEquals(2.0, trend.getRatePerHour(), 0.001);
+    }
+
+    @Test
+    public void oldSamples_leaveByTimestamp() throws Exception {
+        PressureTrend trend = new PressureTrend(WINDOW_MS, 4);
+        trend.add(0, 1010.0);
+        trend.add(TimeUnit.HOURS.toMillis(1), 1000.0);
+        trend.add(TimeUnit.HOURS.toMillis(4), 1000.0);
+        trend.add(TimeUnit.HOURS.toMillis(5), 1000.0);
+        assertEquals(2, trend.size());
+        assertEquals(0.0, trend.getRatePerHour(), 1e-9);
+    }
+}
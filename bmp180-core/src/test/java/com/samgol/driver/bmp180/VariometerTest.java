@@ -0,0 +1,96 @@
+package com.samgol.driver.bmp180;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class VariometerTest {
+
+    private static final int SAMPLES = 2000;
+
+    @Test
+    public void steadyClimb_isTrackedAtSensorRate() throws Exception {
+        int[] ut = new int[SAMPLES];
+        int[] up = new int[SAMPLES];
+        for (int i = 0; i < SAMPLES; i++) {
+            ut[i] = 27898;
+            up[i] = (23843 << 3) - i;
+        }
+        VirtualClock clock = new VirtualClock(1484784000000L);
+        Bmp180 bmp180 = new Bmp180(new ReplayTransport(new ReplayTransport.Trace(ut, up), clock, 0), clock);
+        Recorder recorder = new Recorder();
+        Variometer variometer = new Variometer(bmp180, clock, recorder, Variometer.DEFAULT_ALPHA, Variometer.DEFAULT_BETA);
+
+        long start = clock.nanoTime();
+        for (int i = 0; i < SAMPLES; i++) {
+            variometer.step();
+            if (i == 0) {
+                recorder.firstAltitude = recorder.sample.getAltitude(101325f);
+                recorder.firstNanos = recorder.sample.getBusCompleteNanos();
+            }
+        }
+        double seconds = (clock.nanoTime() - start) / 1e9;
+        double climb = (recorder.sample.getAltitude(101325f) - recorder.firstAltitude)
+                / ((recorder.sample.getBusCompleteNanos() - recorder.firstNanos) / 1e9);
+
+        assertEquals(SAMPLES, variometer.getSamples());
+        assertTrue("rate " + SAMPLES / seconds + " Hz", SAMPLES / seconds > 180);
+        assertTrue("climb " + climb, climb > 0.5);
+        assertEquals(climb, recorder.verticalSpeed, climb * 0.1);
+        assertTrue(variometer.toString(), variometer.getMaxLatencyNanos() < TimeUnit.MILLISECONDS.toNanos(10));
+        assertTrue(variometer.toString(), variometer.getMeanLatencyNanos() < TimeUnit.MILLISECONDS.toNanos(6));
+        bmp180.close();
+    }
+
+    @Test
+    public void failingListener_doesNotStopSampling() throws Exception {
+        VirtualClock clock = new VirtualClock(1484784000000L);
+        Bmp180 bmp180 = new Bmp180(new ReplayTransport(ReplayTransport.Trace.synthetic(64, 2), clock, 0), clock);
+        final AtomicInteger calls = new AtomicInteger();
+        Variometer variometer = new Variometer(bmp180, clock, new Variometer.Listener() {
+            @Override
+            public void onVerticalSpeed(PressureSample sample, float altitude, float verticalSpeed, long latencyNanos) {
+                if (calls.incrementAndGet() % 2 == 1) {
+                    throw new IllegalStateException("listener bug");
+                }
+            }
+        }, Variometer.DEFAULT_ALPHA, Variometer.DEFAULT_BETA);
+
+        variometer.start();
+        for (int i = 0; i < 500 && calls.get() < 20; i++) {
+            Thread.sleep(2);
+        }
+        variometer.stop();
+
+        assertTrue("calls " + calls.get(), calls.get() >= 20);
+        assertTrue(variometer.toString(), variometer.getSamples() >= 20);
+        bmp180.close();
+    }
+
+    @Test
+    public void variometerClock_waitsOutSubMillisecondDeadlines() throws Exception {
+        long wait = TimeUnit.MICROSECONDS.toNanos(300);
+        for (int i = 0; i < 20; i++) {
+            long start = System.nanoTime();
+            Variometer.CLOCK.sleep(wait);
+            assertTrue(System.nanoTime() - start >= wait);
+        }
+    }
+
+    private static class Recorder implements Variometer.Listener {
+        PressureSample sample;
+        float verticalSpeed;
+        float firstAltitude;
+        long firstNanos;
+
+        @Override
+        public void onVerticalSpeed(PressureSample sample, float altitude, float verticalSpeed, long latencyNanos) {
+            this.sample = sample;
+            this.verticalSpeed = verticalSpeed;
+        }
+    }
+}
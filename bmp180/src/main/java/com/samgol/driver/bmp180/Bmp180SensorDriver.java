@@ -18,11 +18,10 @@ public class Bmp180SensorDriver implements AutoCloseable {
     // DRIVER parameters
     // documented at https://source.android.com/devices/sensors/hal-interface.html#sensor_t
     private static final String DRIVER_VENDOR = "Bosch";
-    private static final String DRIVER_NAME = "BMP180";
     private static final int DRIVER_MIN_DELAY_US = Math.round(1000000.f / Bmp180.MAX_FREQ_HZ);
     private static final int DRIVER_MAX_DELAY_US = Math.round(1000000.f / Bmp180.MIN_FREQ_HZ);
 
-    private Bmp180 mDevice;
+    private PressureSensor mDevice;
 
     private TemperatureUserDriver mTemperatureUserDriver;
     private PressureUserDriver mPressureUserDriver;
@@ -33,17 +32,60 @@ public class Bmp180SensorDriver implements AutoCloseable {
      * The driver emits {@link Sensor} with pressure and temperature data when
      * registered.
      *
+     * The connected chip, BMP180 or BMP280/BME280, is detected automatically.
+     *
      * @param bus I2C bus the sensor is connected to.
-     * @throws IOException
+     * @throws IOException if no supported sensor is found on the bus
      * @see #registerPressureSensor()
      * @see #registerTemperatureSensor()
      */
     public Bmp180SensorDriver(String bus) throws IOException {
-        mDevice = new Bmp180(bus);
+        mDevice = PressureSensors.open(bus);
     }
 
+    /**
+     * Create a new framework sensor driver on top of an already opened device.
+     *
+     * @param device the sensor, owned and closed by this driver.
+     */
+    public Bmp180SensorDriver(PressureSensor device) {
+        mDevice = device;
+    }
 
+    /**
+     * Values reported by the pressure sensor: the pressure in Pa.
+     *
+     * @throws IOException if there was communication problem
+     */
+    public float[] readPressureValues() throws IOException {
+        return new float[]{device().readPressure()};
+    }
 
+    /**
+     * Values reported by the temperature sensor: the temperature in degrees Celsius.
+     *
+     * @throws IOException if there was communication problem
+     */
+    public float[] readTemperatureValues() throws IOException {
+        return new float[]{device().readTemperature()};
+    }
+
+    /**
+     * Values reported by the barometer sensor: pressure, temperature and altitude.
+     *
+     * @throws IOException if there was communication problem
+     * @see PressureSensor#readAllValues()
+     */
+    public float[] readBarometerValues() throws IOException {
+        return device().readAllValues();
+    }
+
+    private PressureSensor device() {
+        if (mDevice == null) {
+            throw new IllegalStateException("cannot read closed driver");
+        }
+        return mDevice;
+    }
 
     /**
      * Close the driver and the underlying device.
@@ -159,7 +201,7 @@ public class Bmp180SensorDriver implements AutoCloseable {
             if (mUserSensor == null) {
                 mUserSensor = UserSensor.builder()
                         .setType(Sensor.TYPE_PRESSURE)
-                        .setName(DRIVER_NAME)
+                        .setName(mDevice.getChipName())
                         .setVendor(DRIVER_VENDOR)
                         .setVersion(DRIVER_VERSION)
                         .setMaxRange(DRIVER_MAX_RANGE)
@@ -178,7 +220,7 @@ public class Bmp180SensorDriver implements AutoCloseable {
 
         @Override
         public UserSensorReading read() throws IOException {
-            return new UserSensorReading(new float[]{mDevice.readPressure()});
+            return new UserSensorReading(readPressureValues());
         }
 
         @Override
@@ -209,7 +251,7 @@ public class Bmp180SensorDriver implements AutoCloseable {
                         .setCustomType(Sensor.TYPE_DEVICE_PRIVATE_BASE,
                                 BAROMETER_SENSOR,
                                 Sensor.REPORTING_MODE_CONTINUOUS)
-                        .setName(DRIVER_NAME)
+                        .setName(mDevice.getChipName())
                         .setVendor(DRIVER_VENDOR)
                         .setVersion(DRIVER_VERSION)
                         .setResolution(DRIVER_RESOLUTION)
@@ -225,7 +267,7 @@ public class Bmp180SensorDriver implements AutoCloseable {
 
         @Override
         public UserSensorReading read() throws IOException {
-            return new UserSensorReading(mDevice.readAllValues());
+            return new UserSensorReading(readBarometerValues());
         }
 
         @Override
@@ -256,7 +298,7 @@ public class Bmp180SensorDriver implements AutoCloseable {
             if (mUserSensor == null) {
                 mUserSensor = UserSensor.builder()
                         .setType(Sensor.TYPE_AMBIENT_TEMPERATURE)
-                        .setName(DRIVER_NAME)
+                        .setName(mDevice.getChipName())
                         .setVendor(DRIVER_VENDOR)
                         .setVersion(DRIVER_VERSION)
                         .setMaxRange(DRIVER_MAX_RANGE)
@@ -275,7 +317,7 @@ public class Bmp180SensorDriver implements AutoCloseable {
 
         @Override
         public UserSensorReading read() throws IOException {
-            return new UserSensorReading(new float[]{mDevice.readTemperature()});
+            return new UserSensorReading(readTemperatureValues());
         }
 
         @Override
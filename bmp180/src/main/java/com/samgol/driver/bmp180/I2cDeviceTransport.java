@@ -0,0 +1,37 @@
+package com.samgol.driver.bmp180;
+
+import com.google.android.things.pio.I2cDevice;
+
+import java.io.IOException;
+
+/**
+ * {@link RegisterTransport} backed by an Android Things {@link I2cDevice}.
+ */
+public class I2cDeviceTransport implements RegisterTransport {
+
+    private final I2cDevice mDevice;
+
+    public I2cDeviceTransport(I2cDevice device) {
+        mDevice = device;
+    }
+
+    @Override
+    public int readRegByte(int register) throws IOException {
+        return mDevice.readRegByte(register) & 0xFF;
+    }
+
+    @Override
+    public void readRegBuffer(int register, byte[] buffer, int length) throws IOException {
+        mDevice.readRegBuffer(register, buffer, length);
+    }
+
+    @Override
+    public void writeRegByte(int register, byte value) throws IOException {
+        mDevice.writeRegByte(register, value);
+    }
+
+    @Override
+    public void close() throws IOException {
+        mDevice.close();
+    }
+}
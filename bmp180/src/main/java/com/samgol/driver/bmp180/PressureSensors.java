@@ -0,0 +1,173 @@
+package com.samgol.driver.bmp180;
+
+import com.google.android.things.pio.I2cDevice;
+import com.google.android.things.pio.PeripheralManagerService;
+
+import java.io.IOException;
+
+/**
+ * Opens the supported pressure sensors on an Android Things I2C bus.
+ */
+public final class PressureSensors {
+
+    private static final int[] ADDRESSES = {Bmp180.BMP180_ADDRESS, Bmp280.BMP280_ADDRESS_ALT};
+
+    /**
+     * A register access of a shared BMP180 should finish within one ultra low power conversion.
+     */
+    private static final long BMP180_DEADLINE_MS = 5;
+
+    private PressureSensors() {
+    }
+
+    /**
+     * Probes the BMP180 and BMP280/BME280 addresses of the bus and opens the first chip found.
+     *
+     * @param i2cName I2C bus the sensor is connected to
+     * @return the driver of the detected chip
+     * @throws IOException if no supported chip answers on the bus
+     */
+    public static PressureSensor open(String i2cName) throws IOException {
+        return open(i2cName, null);
+    }
+
+    /**
+     * Probes the bus like {@link #open(String)}, a BMP180 calibration is kept in the store.
+     *
+     * @param i2cName I2C bus the sensor is connected to
+     * @param store   where the BMP180 calibration is kept between opens, may be null
+     * @return the driver of the detected chip
+     * @throws IOException if no supported chip answers on the bus
+     */
+    public static PressureSensor open(String i2cName, CalibrationStore store) throws IOException {
+        PeripheralManagerService manager = new PeripheralManagerService();
+        for (int address : ADDRESSES) {
+            I2cDevice device = manager.openI2cDevice(i2cName, address);
+            boolean opened = false;
+            try {
+                PressureSensor sensor = SensorProbe.open(new I2cDeviceTransport(device), Clock.SYSTEM, store, i2cName);
+                if (sensor != null) {
+                    opened = true;
+                    return sensor;
+                }
+            } catch (IOException e) {
+                // nothing answers at this address
+            } finally {
+                if (!opened) {
+                    device.close();
+                }
+            }
+        }
+        throw new IOException("No BMP180, BMP280 or BME280 found on " + i2cName);
+    }
+
+    /**
+     * Opens a BMP180 at its fixed address.
+     *
+     * @param i2cName I2C bus the sensor is connected to
+     * @param store   where the calibration is kept between opens, may be null
+     * @return the driver
+     * @throws IOException if the bus can't be opened
+     */
+    public static Bmp180 openBmp180(String i2cName, CalibrationStore store) throws IOException {
+        I2cDevice device = new PeripheralManagerService().openI2cDevice(i2cName, Bmp180.BMP180_ADDRESS);
+        return new Bmp180(new I2cDeviceTransport(device), Clock.SYSTEM, store, i2cName);
+    }
+
+    /**
+     * Replaces the former {@code new Bmp180(String)} constructor.
+     *
+     * @param i2cName I2C bus the sensor is connected to
+     * @return the driver
+     * @throws IOException if the bus can't be opened
+     * @deprecated use {@link #openBmp180(String, CalibrationStore)}
+     */
+    @Deprecated
+    public static Bmp180 newBmp180(String i2cName) throws IOException {
+        return openBmp180(i2cName, null);
+    }
+
+    /**
+     * Replaces the former {@code new Bmp180(I2cDevice)} constructor. A calibration that can't be read
+     * is logged and read again on the next sample.
+     *
+     * @param device BMP180 device, closed by the driver
+     * @return the driver
+     * @deprecated use {@link #openBmp180(String, CalibrationStore)}, or wrap the device in an
+     * {@link I2cDeviceTransport}
+     */
+    @Deprecated
+    public static Bmp180 newBmp180(I2cDevice device) {
+        return new Bmp180(new I2cDeviceTransport(device), Clock.SYSTEM);
+    }
+
+    /**
+     * Opens a BMP180 at its fixed address as a client of a shared bus, the bus stays free for the
+     * other clients while a conversion is running.
+     *
+     * @param bus      scheduler owning the I2C bus the sensor is connected to
+     * @param i2cName  name of that bus
+     * @param store    where the calibration is kept between opens, may be null
+     * @param priority priority of the sensor on the bus, e.g. {@link I2cBusScheduler#PRIORITY_HIGH}
+     * @return the driver
+     * @throws IOException if there was communication problem or the calibration can't be read, the
+     *                     sensor is then unregistered from the bus
+     */
+    public static Bmp180 openBmp180(I2cBusScheduler bus, String i2cName, CalibrationStore store, int priority)
+            throws IOException {
+        I2cDevice device = new PeripheralManagerService().openI2cDevice(i2cName, Bmp180.BMP180_ADDRESS);
+        I2cBusScheduler.Client client;
+        try {
+            client = bus.register("bmp180", new I2cDeviceTransport(device), priority, BMP180_DEADLINE_MS);
+        } catch (RuntimeException e) {
+            device.close();
+            throw e;
+        }
+        boolean opened = false;
+        try {
+            Bmp180 bmp180 = new Bmp180(client, Clock.SYSTEM, store, i2cName);
+            if (bmp180.getCalibration() == null) {
+                throw new IOException("Can't read the BMP180 calibration on " + i2cName);
+            }
+            opened = true;
+            return bmp180;
+        } finally {
+            if (!opened) {
+                client.close();
+            }
+        }
+    }
+
+    /**
+     * Opens a BMP280 or BME280 and starts it in normal mode.
+     *
+     * @param i2cName I2C bus the sensor is connected to
+     * @param address {@link Bmp280#BMP280_ADDRESS} or {@link Bmp280#BMP280_ADDRESS_ALT}
+     * @return the driver
+     * @throws IOException if there was communication problem or the chip is not a BMP280/BME280
+     */
+    public static Bmp280 openBmp280(String i2cName, int address) throws IOException {
+        I2cDevice device = new PeripheralManagerService().openI2cDevice(i2cName, address);
+        try {
+            return new Bmp280(new I2cDeviceTransport(device), Clock.SYSTEM);
+        } catch (IOException e) {
+            device.close();
+            throw e;
+        }
+    }
+
+    /**
+     * @see SensorProbe#open(RegisterTransport, Clock)
+     */
+    public static PressureSensor open(RegisterTransport transport, Clock clock) throws IOException {
+        return SensorProbe.open(transport, clock);
+    }
+
+    /**
+     * @see SensorProbe#open(RegisterTransport, Clock, CalibrationStore, String)
+     */
+    public static PressureSensor open(RegisterTransport transport, Clock clock, CalibrationStore store,
+                                      String busName) throws IOException {
+        return SensorProbe.open(transport, clock, store, busName);
+    }
+}
@@ -1,5 +1,6 @@
 package com.korotun.iot.raspberryiot
 
+import com.google.firebase.database.Exclude
 import java.util.*
 
 class Bmp180Data {
@@ -8,6 +9,17 @@ class Bmp180Data {
     var pressure: Int = 0
     var altitude: Int = 0
     var date: Long = 0
+    var tendency: String? = null
+    var pressureRate: Float = 0f
+    var forecast: String? = null
+    /** Offset of the device clock to the server clock in ms, [date] + clockOffset is server time. */
+    var clockOffset: Long = 0
+    /** Stage timestamps in microseconds after the conversion start at [date]. */
+    var busDoneUs: Int = 0
+    var compensatedUs: Int = 0
+    var enqueuedUs: Int = 0
+    @get:Exclude
+    var startNanos: Long = 0
 
     constructor() {
     }
@@ -19,7 +31,23 @@ class Bmp180Data {
         this.date = date
     }
 
+    /**
+     * Copy a consumer can stamp without racing the other consumers of the same published sample.
+     */
+    fun copy(): Bmp180Data {
+        val copy = Bmp180Data(temperature, pressure, altitude, date)
+        copy.tendency = tendency
+        copy.pressureRate = pressureRate
+        copy.forecast = forecast
+        copy.clockOffset = clockOffset
+        copy.busDoneUs = busDoneUs
+        copy.compensatedUs = compensatedUs
+        copy.enqueuedUs = enqueuedUs
+        copy.startNanos = startNanos
+        return copy
+    }
+
     override fun toString(): String{
-        return "Bmp180Data(temperature=$temperature, pressure=$pressure, altitude=$altitude, date=$date)"
+        return "Bmp180Data(temperature=$temperature, pressure=$pressure, altitude=$altitude, date=$date, tendency=$tendency, pressureRate=$pressureRate, forecast=$forecast, clockOffset=$clockOffset, busDoneUs=$busDoneUs, compensatedUs=$compensatedUs, enqueuedUs=$enqueuedUs)"
     }
 }
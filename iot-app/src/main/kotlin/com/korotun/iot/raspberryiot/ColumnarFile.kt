@@ -0,0 +1,308 @@
+package com.korotun.iot.raspberryiot
+
+import java.io.*
+
+/**
+ * Columnar file of sample history for offline analysis.
+ *
+ * After the [MAGIC] and [VERSION] header the file is a sequence of blocks of up to `blockRows`
+ * rows. Each block starts with its row count, the min/max of the date, pressure and temperature
+ * and the byte length of each column, followed by the date, pressure and temperature columns.
+ * Every column is delta encoded, zigzag mapped and written as varints, so a sample minutes apart
+ * with a steady pressure takes a few bytes. Readers skip blocks outside a date range by their
+ * header alone.
+ *
+ * Only the date, pressure and temperature are kept, the derived altitude, pressure rate and
+ * tendency are not. [export] and [importInto] are library entry points for offline tools, the
+ * station itself never calls them.
+ */
+object ColumnarFile {
+
+    val MAGIC = 0x53434f4c // "SCOL"
+    val VERSION = 1
+    val DEFAULT_BLOCK_ROWS = 4096
+
+    /**
+     * Streams the samples of a [SampleLog] dated within [from]..[to] into a columnar file, in memory
+     * bounded by one block.
+     *
+     * @return number of exported samples
+     */
+    @JvmStatic @JvmOverloads @Throws(IOException::class)
+    fun export(log: File, target: File, from: Long = Long.MIN_VALUE, to: Long = Long.MAX_VALUE,
+               blockRows: Int = DEFAULT_BLOCK_ROWS): Long {
+        val record = SampleLog.Record()
+        var rows = 0L
+        SampleLog.Reader(log).use { reader ->
+            Writer(BufferedOutputStream(FileOutputStream(target)), blockRows).use { writer ->
+                while (reader.next(record)) {
+                    if (record.date in from..to) {
+                        writer.write(record.date, record.pressure, record.temperature)
+                        rows++
+                    }
+                }
+            }
+        }
+        return rows
+    }
+
+    /**
+     * Restores the samples of a columnar file dated within [from]..[to] into a new [SampleLog] file.
+     * The restore is lossy: records get altitude 0, pressure rate 0 and an unknown tendency.
+     *
+     * @param target log file to create, must not exist or be empty so the dates stay in order
+     * @return number of imported samples
+     * @throws IOException if the files can't be read or written, or [target] already holds samples
+     */
+    @JvmStatic @JvmOverloads @Throws(IOException::class)
+    fun importInto(source: File, target: File, from: Long = Long.MIN_VALUE, to: Long = Long.MAX_VALUE): Long {
+        if (target.length() > 0) {
+            throw IOException("Won't import into the non-empty log $target")
+        }
+        val record = SampleLog.Record()
+        var rows = 0L
+        Reader(BufferedInputStream(FileInputStream(source)), from, to).use { reader ->
+            SampleLog(target).use { log ->
+                while (reader.next(record)) {
+                    log.append(record)
+                    rows++
+                }
+            }
+        }
+        return rows
+    }
+
+    /**
+     * Writes rows in blocks, buffering one block of primitive columns.
+     */
+    class Writer @Throws(IOException::class) constructor(output: OutputStream, private val blockRows: Int) : Closeable {
+
+        private val out = DataOutputStream(output)
+        private val dates = LongArray(blockRows)
+        private val pressures = IntArray(blockRows)
+        private val temperatures = IntArray(blockRows)
+        private val column = ByteArrayOutputStream()
+        private var rows = 0
+
+        init {
+            if (blockRows < 1) {
+                throw IllegalArgumentException("blockRows must be positive: " + blockRows)
+            }
+            out.writeInt(MAGIC)
+            out.writeInt(VERSION)
+        }
+
+        @Throws(IOException::class)
+        fun write(date: Long, pressure: Int, temperature: Int) {
+            dates[rows] = date
+            pressures[rows] = pressure
+            temperatures[rows] = temperature
+            if (++rows == blockRows) {
+                writeBlock()
+            }
+        }
+
+        @Throws(IOException::class)
+        private fun writeBlock() {
+            if (rows == 0) {
+                return
+            }
+            var minDate = Long.MAX_VALUE
+            var maxDate = Long.MIN_VALUE
+            var minPressure = Int.MAX_VALUE
+            var maxPressure = Int.MIN_VALUE
+            var minTemperature = Int.MAX_VALUE
+            var maxTemperature = Int.MIN_VALUE
+            for (i in 0..rows - 1) {
+                minDate = Math.min(minDate, dates[i])
+                maxDate = Math.max(maxDate, dates[i])
+                minPressure = Math.min(minPressure, pressures[i])
+                maxPressure = Math.max(maxPressure, pressures[i])
+                minTemperature = Math.min(minTemperature, temperatures[i])
+                maxTemperature = Math.max(maxTemperature, temperatures[i])
+            }
+            out.writeInt(rows)
+            out.writeLong(minDate)
+            out.writeLong(maxDate)
+            out.writeInt(minPressure)
+            out.writeInt(maxPressure)
+            out.writeInt(minTemperature)
+            out.writeInt(maxTemperature)
+
+            // column lengths first, so a reader can skip the block without decoding it
+            column.reset()
+            var previous = 0L
+            for (i in 0..rows - 1) {
+                writeVarLong(column, zigzag(dates[i] - previous))
+                previous = dates[i]
+            }
+            val dateBytes = column.size()
+            previous = 0L
+            for (i in 0..rows - 1) {
+                writeVarLong(column, zigzag(pressures[i] - previous))
+                previous = pressures[i].toLong()
+            }
+            val pressureBytes = column.size() - dateBytes
+            previous = 0L
+            for (i in 0..rows - 1) {
+                writeVarLong(column, zigzag(temperatures[i] - previous))
+                previous = temperatures[i].toLong()
+            }
+            out.writeInt(dateBytes)
+            out.writeInt(pressureBytes)
+            out.writeInt(column.size() - dateBytes - pressureBytes)
+            column.writeTo(out)
+            rows = 0
+        }
+
+        @Throws(IOException::class)
+        override fun close() {
+            try {
+                writeBlock()
+            } finally {
+                out.close()
+            }
+        }
+    }
+
+    /**
+     * Reads rows dated within [from]..[to] one at a time, decoding only the blocks that overlap the range.
+     */
+    class Reader @JvmOverloads @Throws(IOException::class) constructor(input: InputStream,
+                                                          private val from: Long = Long.MIN_VALUE,
+                                                          private val to: Long = Long.MAX_VALUE) : Closeable {
+
+        private val input = DataInputStream(input)
+        private var block = ByteArray(0)
+        private var rows = 0
+        private var row = 0
+        /** Read positions of the date, pressure and temperature columns in [block]. */
+        private val positions = IntArray(3)
+        private var date = 0L
+        private var pressure = 0L
+        private var temperature = 0L
+
+        /** Blocks skipped by their date range without decoding. */
+        var skippedBlocks = 0
+            private set
+
+        init {
+            if (this.input.readInt() != MAGIC || this.input.readInt() != VERSION) {
+                throw IOException("Not a columnar sample file version $VERSION")
+            }
+        }
+
+        /**
+         * @return false at the end of the file
+         */
+        @Throws(IOException::class)
+        fun next(record: SampleLog.Record): Boolean {
+            while (true) {
+                while (row < rows) {
+                    row++
+                    date += unzigzag(readVarLong(DATE))
+                    pressure += unzigzag(readVarLong(PRESSURE))
+                    temperature += unzigzag(readVarLong(TEMPERATURE))
+                    if (date in from..to) {
+                        record.date = date
+                        record.pressure = pressure.toInt()
+                        record.temperature = temperature.toInt()
+                        record.altitude = 0
+                        record.pressureRate = 0f
+                        record.tendency = -1
+                        return true
+                    }
+                }
+                if (!nextBlock()) {
+                    return false
+                }
+            }
+        }
+
+        @Throws(IOException::class)
+        private fun nextBlock(): Boolean {
+            while (true) {
+                val count: Int
+                try {
+                    count = input.readInt()
+                } catch (e: EOFException) {
+                    return false
+                }
+                val minDate = input.readLong()
+                val maxDate = input.readLong()
+                input.skipBytes(4 * 4) // pressure and temperature ranges
+                val dateBytes = input.readInt()
+                val pressureBytes = input.readInt()
+                val temperatureBytes = input.readInt()
+                val length = dateBytes + pressureBytes + temperatureBytes
+                if (maxDate < from || minDate > to) {
+                    skipFully(length)
+                    skippedBlocks++
+                    continue
+                }
+                if (block.size < length) {
+                    block = ByteArray(length)
+                }
+                input.readFully(block, 0, length)
+                rows = count
+                row = 0
+                positions[DATE] = 0
+                positions[PRESSURE] = dateBytes
+                positions[TEMPERATURE] = dateBytes + pressureBytes
+                date = 0L
+                pressure = 0L
+                temperature = 0L
+                return true
+            }
+        }
+
+        @Throws(IOException::class)
+        private fun skipFully(length: Int) {
+            var remaining = length
+            while (remaining > 0) {
+                val skipped = input.skipBytes(remaining)
+                if (skipped <= 0) {
+                    throw EOFException()
+                }
+                remaining -= skipped
+            }
+        }
+
+        private fun readVarLong(column: Int): Long {
+            var position = positions[column]
+            var result = 0L
+            var shift = 0
+            while (true) {
+                val b = block[position++].toInt()
+                result = result or ((b and 0x7F).toLong() shl shift)
+                if (b and 0x80 == 0) {
+                    break
+                }
+                shift += 7
+            }
+            positions[column] = position
+            return result
+        }
+
+        override fun close() {
+            input.close()
+        }
+    }
+
+    private val DATE = 0
+    private val PRESSURE = 1
+    private val TEMPERATURE = 2
+
+    private fun zigzag(value: Long): Long = (value shl 1) xor (value shr 63)
+
+    private fun unzigzag(value: Long): Long = (value ushr 1) xor -(value and 1)
+
+    private fun writeVarLong(out: ByteArrayOutputStream, value: Long) {
+        var remaining = value
+        while (remaining and 0x7FL.inv() != 0L) {
+            out.write(((remaining and 0x7F) or 0x80).toInt())
+            remaining = remaining ushr 7
+        }
+        out.write(remaining.toInt())
+    }
+}
@@ -2,12 +2,20 @@ package com.korotun.iot.raspberryiot
 
 import android.app.Activity
 import android.os.Bundle
+import android.preference.PreferenceManager
+import android.provider.Settings
 import android.util.Log
-import com.google.firebase.database.DatabaseReference
-import com.google.firebase.database.FirebaseDatabase
 import com.samgol.driver.bmp180.Bmp180
+import com.samgol.driver.bmp180.Bmp180PowerScheduler
+import com.samgol.driver.bmp180.Clock
+import com.samgol.driver.bmp180.FileCalibrationStore
+import com.samgol.driver.bmp180.PressureSensor
+import com.samgol.driver.bmp180.PressureSensors
 import io.reactivex.Flowable
+import io.reactivex.android.schedulers.AndroidSchedulers
 import io.reactivex.disposables.Disposable
+import io.reactivex.schedulers.Schedulers
+import java.io.File
 import java.io.IOException
 import java.util.concurrent.TimeUnit
 
@@ -15,47 +23,167 @@ import java.util.concurrent.TimeUnit
 class IOTActivity : Activity() {
 
     private val I2C_BUS = "I2C1"
-    private val SENSOR_DATA_REFERENCE = "bmp180"
-    private val mBmp180: Bmp180 by lazy { Bmp180(I2C_BUS) }
+    @Volatile private var mSensor: PressureSensor? = null
+    private var openDisposable: Disposable? = null
+    private var verifyDisposable: Disposable? = null
+    @Volatile private var startedAt = 0L
     private val TAG = IOTActivity::class.java.simpleName
     private var disposable: Disposable? = null
+    private var rawCapture: RawCapture? = null
+    private val latency = LatencyTracker()
+    private val uploader: FirebaseUploader by lazy { FirebaseUploader(stationId(), latency) }
+    private val bus = SampleBus(BUS_CAPACITY)
+    private var sampleLog: SampleLog? = null
+    @Volatile private var powerScheduler: Bmp180PowerScheduler? = null
 
     override fun onCreate(savedInstanceState: Bundle?) {
         super.onCreate(savedInstanceState)
-        startSensorPolling()
+        val rawCapture = isRawCaptureEnabled()
+        // probing the bus blocks, it runs off the main thread and is retried until a sensor answers
+        openDisposable = Flowable.fromCallable { PressureSensors.open(I2C_BUS, FileCalibrationStore(filesDir)) }
+                .subscribeOn(Schedulers.io())
+                .doOnError { Log.w(TAG, "No sensor answers on $I2C_BUS, retrying in 10 minutes:", it) }
+                .retryWhen { it.delay(10, TimeUnit.MINUTES) }
+                .observeOn(AndroidSchedulers.mainThread())
+                .subscribe({ onSensorOpened(it, rawCapture) },
+                        { Log.e(TAG, "Can't open the sensor:", it) })
+    }
+
+    private fun onSensorOpened(sensor: PressureSensor, rawCapture: Boolean) {
+        mSensor = sensor
+        val bmp180 = sensor as? Bmp180
+        powerScheduler = bmp180?.let { Bmp180PowerScheduler(it, POWER_BUDGET_UA, FAST_SAMPLE_INTERVAL_MS, SLOW_SAMPLE_INTERVAL_MS) }
+        if (rawCapture && bmp180 != null) {
+            startRawCapture(bmp180)
+        } else {
+            startSensorPolling(SamplePipeline(sensor, uploader, Clock.SYSTEM, latency))
+        }
+    }
+
+    /**
+     * Raw capture is switched on or off by starting the activity with the [EXTRA_RAW_CAPTURE] boolean,
+     * e.g. `adb shell am start -n com.korotun.iot.raspberryiot/.IOTActivity --ez raw_capture true`,
+     * and the choice is kept across restarts.
+     */
+    private fun isRawCaptureEnabled(): Boolean {
+        val preferences = PreferenceManager.getDefaultSharedPreferences(this)
+        if (intent.hasExtra(EXTRA_RAW_CAPTURE)) {
+            preferences.edit().putBoolean(PREF_RAW_CAPTURE, intent.getBooleanExtra(EXTRA_RAW_CAPTURE, false)).apply()
+        }
+        return preferences.getBoolean(PREF_RAW_CAPTURE, false)
     }
 
-    private fun startSensorPolling() {
-        disposable = getSensorDataAsFlowable()
-                .repeatWhen { it.delay(10, TimeUnit.MINUTES) }
+    /**
+     * Logs uncompensated readings at a high rate, the consumers compensate them in batches.
+     */
+    private fun startRawCapture(bmp180: Bmp180) {
+        bmp180.setMode(Bmp180.BMP180_ULTRA_LOW_POWER)
+        bmp180.setTemperatureRefreshInterval(RAW_TEMPERATURE_REFRESH)
+        val capture = RawCapture(bmp180, uploader)
+        rawCapture = capture
+        uploader.start()
+        // captures block on the bus, they run one at a time on an io worker rather than on the computation pool
+        disposable = Flowable.interval(RAW_CAPTURE_INTERVAL_MS, TimeUnit.MILLISECONDS, Schedulers.io())
+                .doOnNext { capture.capture() }
+                .retryWhen { it.delay(10, TimeUnit.SECONDS) }
+                .subscribe({}, { Log.e(TAG, "Can't capture raw data:", it) })
+    }
+
+    private fun startSensorPolling(pipeline: SamplePipeline) {
+        uploader.start()
+        subscribeConsumers(pipeline)
+        startedAt = System.nanoTime()
+        disposable = getSensorDataAsFlowable(pipeline)
+                .doOnNext { onSampled(it) }
+                .repeatWhen { it.delay<Long> { Flowable.timer(sampleIntervalMillis(), TimeUnit.MILLISECONDS) } }
                 .retryWhen { it.delay(10, TimeUnit.MINUTES) }
-                .subscribe({ storeToDB(it) },
+                .subscribe({ bus.publish(it) },
                         { Log.e(TAG, "Can't read data from sensor:", it) })
     }
 
-    private fun storeToDB(data: Bmp180Data?) {
-        val firebase = FirebaseDatabase.getInstance()
-        val reference: DatabaseReference = firebase.getReference(SENSOR_DATA_REFERENCE)
-        reference.push().setValue(data)
-        Log.d(TAG, "${data.toString()}  saved into firebase")
+    /**
+     * Every consumer runs at its own pace behind the bus, a stalled upload or storage never delays the acquisition.
+     */
+    private fun subscribeConsumers(pipeline: SamplePipeline) {
+        bus.subscribe("upload", object : SampleBus.Handler {
+            override fun onSample(data: Bmp180Data) = pipeline.upload(data)
+        }, BlockingWaitStrategy(), SampleBus.OverflowPolicy.SAMPLE_DOWN, UPLOAD_MAX_LAG)
+        try {
+            val log = SampleLog(File(filesDir, SAMPLE_LOG_FILE))
+            sampleLog = log
+            bus.subscribe("log", log, BlockingWaitStrategy(), SampleBus.OverflowPolicy.DROP, LOG_MAX_LAG)
+        } catch (e: IOException) {
+            Log.e(TAG, "Can't open the sample log:", e)
+        }
+        bus.subscribe("analytics", object : SampleBus.Handler {
+            override fun onSample(data: Bmp180Data) = onAnalytics(data)
+        }, BlockingWaitStrategy(), SampleBus.OverflowPolicy.SAMPLE_DOWN, ANALYTICS_MAX_LAG)
+    }
+
+    /**
+     * Runs on the acquisition path, the power plan must be updated before the next sample is scheduled.
+     */
+    private fun onSampled(data: Bmp180Data) {
+        if (startedAt != 0L) {
+            Log.d(TAG, "Start to first sample: ${TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedAt)} ms")
+            startedAt = 0L
+            verifyCalibrationInBackground()
+        }
+        powerScheduler?.let {
+            it.onSample(data.pressure)
+            Log.d(TAG, it.toString())
+        }
+    }
+
+    private fun onAnalytics(data: Bmp180Data) {
+        Log.d(TAG, "tendency ${data.tendency} ${data.pressureRate} hPa/h, forecast ${data.forecast}; bus: ${bus.lagReport()}")
+    }
+
+    /**
+     * Every station publishes under its own path, keyed by the Android ID of the device.
+     */
+    private fun stationId(): String {
+        return Settings.Secure.getString(contentResolver, Settings.Secure.ANDROID_ID)
+    }
+
+    /**
+     * The BMP180 is scheduled against the power budget, a free-running BMP280 is sampled at the slow interval.
+     */
+    private fun sampleIntervalMillis(): Long {
+        return powerScheduler?.sampleIntervalMillis ?: SLOW_SAMPLE_INTERVAL_MS
     }
 
-    private fun getSensorDataAsFlowable(): Flowable<Bmp180Data> {
-        return Flowable.fromCallable { getSensorData() }
+    /**
+     * The BMP180 calibration may come from the local store, re-check it against the chip off the sampling path.
+     */
+    private fun verifyCalibrationInBackground() {
+        val bmp180 = mSensor as? Bmp180 ?: return
+        verifyDisposable = Flowable.fromCallable { bmp180.verifyCalibration() }
+                .subscribeOn(Schedulers.io())
+                .subscribe({ Log.d(TAG, "Calibration verified, unchanged: $it") },
+                        { Log.e(TAG, "Can't verify calibration:", it) })
     }
 
-    private fun getSensorData(): Bmp180Data {
-        val temp = mBmp180.readTemperature()
-        val press = mBmp180.readPressure()
-        val alt = mBmp180.readAltitude()
-        return Bmp180Data(temp.toInt(), press, alt.toInt())
+    private fun getSensorDataAsFlowable(pipeline: SamplePipeline): Flowable<Bmp180Data> {
+        return Flowable.fromCallable { pipeline.acquire() }
+                .subscribeOn(Schedulers.io())
     }
 
 
     private fun closeSensor() {
+        openDisposable?.dispose()
         disposable?.dispose()
+        verifyDisposable?.dispose()
+        rawCapture?.flush()
+        bus.close()
         try {
-            mBmp180.close()
+            sampleLog?.close()
+        } catch (e: IOException) {
+            Log.e(TAG, "closeSensor  error: ", e)
+        }
+        uploader.stop()
+        try {
+            mSensor?.close()
         } catch (e: IOException) {
             Log.e(TAG, "closeSensor  error: ", e)
         }
@@ -66,5 +194,20 @@ class IOTActivity : Activity() {
         super.onDestroy()
     }
 
+    companion object {
+        private val POWER_BUDGET_UA = 0.5f
+        private val FAST_SAMPLE_INTERVAL_MS = TimeUnit.MINUTES.toMillis(1)
+        private val SLOW_SAMPLE_INTERVAL_MS = TimeUnit.MINUTES.toMillis(10)
+        private val BUS_CAPACITY = 64
+        private val UPLOAD_MAX_LAG = 32
+        private val LOG_MAX_LAG = 62
+        private val ANALYTICS_MAX_LAG = 8
+        private val SAMPLE_LOG_FILE = "samples.log"
+        val EXTRA_RAW_CAPTURE = "raw_capture"
+        private val PREF_RAW_CAPTURE = "raw_capture"
+        private val RAW_CAPTURE_INTERVAL_MS = 50L
+        private val RAW_TEMPERATURE_REFRESH = 20
+    }
+
 
 }
\ No newline at end of file
@@ -0,0 +1,19 @@
+package com.korotun.iot.raspberryiot
+
+import com.samgol.driver.bmp180.LatencyHistogram
+
+/**
+ * Per stage latency histograms of the device side of a sample's path:
+ * conversion start, bus read complete, compensation done, enqueued to the uploader, store acknowledged.
+ */
+class LatencyTracker {
+
+    val bus = LatencyHistogram("conversion+bus")
+    val compensation = LatencyHistogram("compensation")
+    val queue = LatencyHistogram("queue")
+    val store = LatencyHistogram("store")
+
+    fun summary(): String {
+        return listOf(bus, compensation, queue, store).joinToString("; ")
+    }
+}
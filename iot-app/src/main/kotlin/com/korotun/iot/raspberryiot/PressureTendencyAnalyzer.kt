@@ -0,0 +1,116 @@
+package com.korotun.iot.raspberryiot
+
+import com.samgol.driver.bmp180.PressureTrend
+
+/**
+ * Streaming pressure tendency and short-term forecast.
+ *
+ * The rate comes from a least squares fit over the sliding window, see [PressureTrend]. Its memory is
+ * bounded whatever the sample rate: fast samples are averaged into fixed-width buckets once the window
+ * would hold more than [PressureTrend.MAX_SAMPLES] entries.
+ *
+ * @param windowMillis width of the regression window, 3 hours is the standard tendency period
+ * @param capacity     initial ring size, grows up to [PressureTrend.MAX_SAMPLES] entries
+ * @param stationAltitude altitude of the station in meters, used to reduce pressure to sea level
+ */
+class PressureTendencyAnalyzer(windowMillis: Long = THREE_HOURS_MS,
+                               capacity: Int = 256,
+                               private val stationAltitude: Double = 0.0) {
+
+    enum class Tendency {
+        UNKNOWN,
+        STEADY,
+        RISING_SLOWLY, RISING, RISING_QUICKLY, RISING_VERY_RAPIDLY,
+        FALLING_SLOWLY, FALLING, FALLING_QUICKLY, FALLING_VERY_RAPIDLY
+    }
+
+    private val trend = PressureTrend(windowMillis, capacity)
+
+    var tendency = Tendency.UNKNOWN
+        private set
+    /** Pressure change rate in hPa per hour. */
+    var rate = 0.0
+        private set
+    /** Zambretti forecast letter, 'A' (settled fine) to 'Z' (stormy, much rain), or null when unknown. */
+    var forecast: Char? = null
+        private set
+
+    /** Entries the window can hold without growing, never above [PressureTrend.MAX_SAMPLES]. */
+    val capacity: Int
+        get() = trend.capacity
+
+    /**
+     * Adds the sample to the window and writes the derived tendency, rate and forecast into it.
+     */
+    fun onSample(data: Bmp180Data) {
+        add(data.date, data.pressure / PA_IN_HPA)
+        data.tendency = tendency.name
+        data.pressureRate = rate.toFloat()
+        data.forecast = forecast?.toString()
+    }
+
+    fun add(time: Long, pressureHpa: Double) {
+        trend.add(time, pressureHpa)
+        classify(pressureHpa)
+    }
+
+    private fun classify(latestHpa: Double) {
+        val ratePerHour = trend.ratePerHour
+        if (trend.spanMillis < MIN_SPAN_MS || ratePerHour.isNaN()) {
+            tendency = Tendency.UNKNOWN
+            rate = 0.0
+            forecast = null
+            return
+        }
+        rate = ratePerHour
+        val change = rate * 3
+        val magnitude = Math.abs(change)
+        tendency = when {
+            magnitude < 0.1 -> Tendency.STEADY
+            change > 0 -> when {
+                magnitude < 1.6 -> Tendency.RISING_SLOWLY
+                magnitude < 3.6 -> Tendency.RISING
+                magnitude < 6.0 -> Tendency.RISING_QUICKLY
+                else -> Tendency.RISING_VERY_RAPIDLY
+            }
+            else -> when {
+                magnitude < 1.6 -> Tendency.FALLING_SLOWLY
+                magnitude < 3.6 -> Tendency.FALLING
+                magnitude < 6.0 -> Tendency.FALLING_QUICKLY
+                else -> Tendency.FALLING_VERY_RAPIDLY
+            }
+        }
+        forecast = zambretti(seaLevelPressure(latestHpa), change)
+    }
+
+    private fun seaLevelPressure(pressureHpa: Double): Double {
+        return pressureHpa / Math.pow(1.0 - stationAltitude / 44330.0, 5.255)
+    }
+
+    companion object {
+        const val HOUR_MS = 60 * 60 * 1000L
+        const val THREE_HOURS_MS = 3 * HOUR_MS
+        private const val MIN_SPAN_MS = HOUR_MS / 2
+        private const val PA_IN_HPA = 100.0
+
+        private val ZAMBRETTI_FALLING = "ABDHORUXZ"
+        private val ZAMBRETTI_STEADY = "ABEKNPSWXZ"
+        private val ZAMBRETTI_RISING = "ABCFGIJLMQTYZ"
+
+        /**
+         * Classic Zambretti forecaster, [change] is the 3 hour pressure change in hPa.
+         */
+        fun zambretti(seaLevelHpa: Double, change: Double): Char {
+            return when {
+                change <= -1.6 -> pick(ZAMBRETTI_FALLING, 127 - 0.12 * seaLevelHpa, 1)
+                change >= 1.6 -> pick(ZAMBRETTI_RISING, 185 - 0.16 * seaLevelHpa, 20)
+                else -> pick(ZAMBRETTI_STEADY, 144 - 0.13 * seaLevelHpa, 10)
+            }
+        }
+
+        private fun pick(table: String, z: Double, first: Int): Char {
+            val index = Math.round(z).toInt() - first
+            return table[Math.max(0, Math.min(table.length - 1, index))]
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package com.korotun.iot.raspberryiot
+
+import com.samgol.driver.bmp180.Bmp180
+import com.samgol.driver.bmp180.RawSampleBuffer
+import java.io.IOException
+
+interface RawSampleUploader {
+    /**
+     * Publishes the calibration the following raw batches are compensated with, once per session.
+     */
+    fun publishCalibration(calibration: ByteArray, checksum: Long)
+
+    /**
+     * Ships the rows of [buffer]. The buffer is reused after the call returns.
+     */
+    fun uploadRaw(buffer: RawSampleBuffer, calibrationChecksum: Long)
+}
+
+/**
+ * High rate capture of uncompensated BMP180 readings. Each sample costs the conversions and
+ * ten bytes in a preallocated column buffer; compensation is left to the consumers, which get the
+ * calibration once per session and compensate whole batches with `Bmp180Compensation`.
+ */
+class RawCapture @JvmOverloads constructor(private val sensor: Bmp180,
+                                           private val uploader: RawSampleUploader,
+                                           batchSize: Int = BATCH_SIZE) {
+
+    private val buffer = RawSampleBuffer(batchSize)
+    private var calibrationChecksum: Long? = null
+
+    @Synchronized @Throws(IOException::class)
+    fun capture() {
+        if (calibrationChecksum == null) {
+            val calibration = sensor.calibration ?: throw IOException("Calibration not loaded")
+            uploader.publishCalibration(calibration.toBlock(), calibration.checksum())
+            calibrationChecksum = calibration.checksum()
+        }
+        sensor.readRaw(buffer)
+        if (buffer.isFull) {
+            flush()
+        }
+    }
+
+    /**
+     * Ships the rows captured so far.
+     */
+    @Synchronized
+    fun flush() {
+        val checksum = calibrationChecksum ?: return
+        if (buffer.size() > 0) {
+            uploader.uploadRaw(buffer, checksum)
+            buffer.clear()
+        }
+    }
+
+    companion object {
+        val BATCH_SIZE = 200
+    }
+}
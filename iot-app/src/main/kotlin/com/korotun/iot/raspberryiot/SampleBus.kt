@@ -0,0 +1,205 @@
+package com.korotun.iot.raspberryiot
+
+import android.util.Log
+import java.util.concurrent.CopyOnWriteArrayList
+import java.util.concurrent.atomic.AtomicLong
+
+/**
+ * Single producer ring that fans samples out to any number of consumers without copying them and
+ * without ever blocking the publisher.
+ *
+ * The ring is preallocated with a power of two slots. Every consumer runs on its own thread with its
+ * own cursor and [WaitStrategy]. A consumer whose lag exceeds its `maxLag` is handled by its own
+ * [OverflowPolicy]; the slots it has not read yet are overwritten either way, and such
+ * samples are counted as lost.
+ */
+class SampleBus(capacity: Int) {
+
+    enum class OverflowPolicy {
+        /** Unsubscribe the consumer. */
+        DROP,
+        /** Deliver every n-th sample while lagging, n growing with the lag. */
+        SAMPLE_DOWN
+    }
+
+    interface Handler {
+        /** Called on the consumer thread, in publish order. */
+        fun onSample(data: Bmp180Data)
+    }
+
+    private val size: Int
+    private val mask: Int
+    private val ring: Array<Bmp180Data?>
+    private val cursor = AtomicLong(-1)
+    private val consumers = CopyOnWriteArrayList<Consumer>()
+
+    init {
+        if (capacity < 4) {
+            throw IllegalArgumentException("capacity must be at least 4: " + capacity)
+        }
+        size = Integer.highestOneBit(capacity - 1) shl 1
+        mask = size - 1
+        ring = arrayOfNulls<Bmp180Data>(size)
+    }
+
+    val capacity: Int
+        get() = size
+
+    /**
+     * @return the sequence of the last published sample, -1 before the first one
+     */
+    val published: Long
+        get() = cursor.get()
+
+    /**
+     * Publishes a sample to all consumers. Never blocks. All consumers share the instance, so after
+     * publishing only fields owned by a single consumer, like the upload stamps, may be written.
+     */
+    fun publish(data: Bmp180Data) {
+        val next = cursor.get() + 1
+        ring[(next and mask.toLong()).toInt()] = data
+        cursor.lazySet(next)
+        for (consumer in consumers) {
+            consumer.waitStrategy.signal()
+        }
+    }
+
+    /**
+     * Starts a consumer at the next published sample.
+     *
+     * @param maxLag lag in samples above which [policy] applies, at most `capacity - 2`
+     */
+    fun subscribe(name: String, handler: Handler, waitStrategy: WaitStrategy,
+                  policy: OverflowPolicy, maxLag: Int): Consumer {
+        if (maxLag < 1 || maxLag > size - 2) {
+            throw IllegalArgumentException("maxLag must be in 1.." + (size - 2) + ": " + maxLag)
+        }
+        val consumer = Consumer(name, handler, waitStrategy, policy, maxLag, cursor.get() + 1)
+        consumers.add(consumer)
+        consumer.start()
+        return consumer
+    }
+
+    fun unsubscribe(consumer: Consumer) {
+        consumers.remove(consumer)
+        consumer.halt()
+    }
+
+    val subscribers: List<Consumer>
+        get() = consumers
+
+    /**
+     * @return lag and delivery counters of every consumer, for logging
+     */
+    fun lagReport(): String {
+        return consumers.joinToString("; ")
+    }
+
+    /**
+     * Stops all consumers and waits for their threads to finish.
+     */
+    fun close() {
+        val stopped = ArrayList(consumers)
+        consumers.clear()
+        stopped.forEach { it.halt() }
+        stopped.forEach { it.join() }
+    }
+
+    inner class Consumer internal constructor(val name: String,
+                                              private val handler: Handler,
+                                              val waitStrategy: WaitStrategy,
+                                              val policy: OverflowPolicy,
+                                              val maxLag: Int,
+                                              start: Long) {
+
+        private val sequence = AtomicLong(start - 1)
+        @Volatile private var running = true
+        @Volatile var dropped = false
+            private set
+        @Volatile var delivered = 0L
+            private set
+        @Volatile var skipped = 0L
+            private set
+        @Volatile var lost = 0L
+            private set
+        @Volatile var maxObservedLag = 0L
+            private set
+        private val thread = Thread(Runnable { consume() }, "SampleBus-" + name)
+
+        /**
+         * @return number of published samples this consumer has not processed yet
+         */
+        val lag: Long
+            get() = Math.max(0L, cursor.get() - sequence.get())
+
+        internal fun start() {
+            thread.isDaemon = true
+            thread.start()
+        }
+
+        internal fun halt() {
+            running = false
+            waitStrategy.signal()
+        }
+
+        internal fun join() {
+            if (Thread.currentThread() != thread) {
+                thread.join(JOIN_TIMEOUT_MS)
+            }
+        }
+
+        private fun consume() {
+            var next = sequence.get() + 1
+            while (running) {
+                val available = waitStrategy.waitFor(next, cursor)
+                if (available < next) {
+                    continue
+                }
+                val lag = available - next + 1
+                if (lag > maxObservedLag) {
+                    maxObservedLag = lag
+                }
+                var step = 1L
+                if (lag > maxLag) {
+                    if (policy == OverflowPolicy.DROP) {
+                        Log.w(TAG, "$name dropped, lag $lag")
+                        dropped = true
+                        unsubscribe(this)
+                        return
+                    }
+                    step = lag / maxLag + 1
+                }
+
+                val data = ring[(next and mask.toLong()).toInt()]
+                // the publisher overwrites the slot of next once it published next + size - 1
+                val overrunFrom = cursor.get() - size + 2
+                if (next < overrunFrom) {
+                    lost += overrunFrom - next
+                    next = overrunFrom
+                    sequence.lazySet(next - 1)
+                    continue
+                }
+                try {
+                    handler.onSample(data!!)
+                } catch (e: Exception) {
+                    Log.e(TAG, "$name failed on $data", e)
+                }
+                delivered++
+                val following = Math.min(next + step, available + 1)
+                skipped += following - next - 1
+                next = following
+                sequence.lazySet(next - 1)
+            }
+        }
+
+        override fun toString(): String {
+            return "$name lag=$lag max=$maxObservedLag delivered=$delivered skipped=$skipped lost=$lost" +
+                    if (dropped) " dropped" else ""
+        }
+    }
+
+    companion object {
+        private val TAG = SampleBus::class.java.simpleName
+        private val JOIN_TIMEOUT_MS = 1000L
+    }
+}
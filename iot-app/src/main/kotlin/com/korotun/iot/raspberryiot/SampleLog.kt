@@ -0,0 +1,150 @@
+package com.korotun.iot.raspberryiot
+
+import java.io.*
+
+/**
+ * Append-only binary log of samples in local storage, written by a [SampleBus] consumer.
+ *
+ * The file starts with [MAGIC] and [VERSION], followed by fixed size big endian records of
+ * [RECORD_SIZE] bytes. A record cut short by a power loss is ignored on reading and overwritten
+ * by the next session.
+ */
+class SampleLog @Throws(IOException::class) constructor(file: File) : SampleBus.Handler, Closeable {
+
+    private val out: DataOutputStream
+    private var unflushed = 0
+
+    init {
+        val valid = validLength(file)
+        if (valid < file.length()) {
+            RandomAccessFile(file, "rw").use { it.setLength(valid) }
+        }
+        out = DataOutputStream(BufferedOutputStream(FileOutputStream(file, true), BUFFER_SIZE))
+        if (valid == 0L) {
+            out.writeInt(MAGIC)
+            out.writeInt(VERSION)
+        }
+    }
+
+    @Synchronized override fun onSample(data: Bmp180Data) {
+        write(data.date, data.pressure, data.temperature, data.altitude, data.pressureRate, tendencyCode(data.tendency))
+    }
+
+    /**
+     * Appends a decoded record, e.g. when importing history.
+     */
+    @Synchronized @Throws(IOException::class)
+    fun append(record: Record) {
+        write(record.date, record.pressure, record.temperature, record.altitude, record.pressureRate, record.tendency)
+    }
+
+    private fun write(date: Long, pressure: Int, temperature: Int, altitude: Int, pressureRate: Float, tendency: Int) {
+        out.writeLong(date)
+        out.writeInt(pressure)
+        out.writeInt(temperature)
+        out.writeInt(altitude)
+        out.writeFloat(pressureRate)
+        out.writeByte(tendency)
+        if (++unflushed >= FLUSH_EVERY) {
+            flush()
+        }
+    }
+
+    @Synchronized @Throws(IOException::class)
+    fun flush() {
+        out.flush()
+        unflushed = 0
+    }
+
+    @Synchronized @Throws(IOException::class)
+    override fun close() {
+        out.close()
+    }
+
+    /**
+     * One decoded record, reused by [Reader.next] so a log of any length is read in constant memory.
+     */
+    class Record {
+        var date: Long = 0
+        var pressure: Int = 0
+        var temperature: Int = 0
+        var altitude: Int = 0
+        var pressureRate: Float = 0f
+        /** [PressureTendencyAnalyzer.Tendency] ordinal, -1 if unknown to this version. */
+        var tendency: Int = -1
+
+        override fun toString(): String {
+            return "Record(date=$date, pressure=$pressure, temperature=$temperature, altitude=$altitude, pressureRate=$pressureRate, tendency=$tendency)"
+        }
+    }
+
+    /**
+     * Sequential reader of a log, stops at the first incomplete record.
+     */
+    class Reader @Throws(IOException::class) constructor(file: File) : Closeable {
+
+        private val input = DataInputStream(BufferedInputStream(FileInputStream(file), BUFFER_SIZE))
+        private var remaining: Long
+
+        init {
+            remaining = validLength(file) - HEADER_SIZE
+            if (remaining < 0) {
+                remaining = 0
+            } else {
+                input.skipBytes(HEADER_SIZE)
+            }
+        }
+
+        /**
+         * @return false at the end of the log
+         */
+        @Throws(IOException::class)
+        fun next(record: Record): Boolean {
+            if (remaining < RECORD_SIZE) {
+                return false
+            }
+            record.date = input.readLong()
+            record.pressure = input.readInt()
+            record.temperature = input.readInt()
+            record.altitude = input.readInt()
+            record.pressureRate = input.readFloat()
+            record.tendency = input.readByte().toInt()
+            remaining -= RECORD_SIZE
+            return true
+        }
+
+        override fun close() {
+            input.close()
+        }
+    }
+
+    companion object {
+        val MAGIC = 0x534c4f47 // "SLOG"
+        val VERSION = 1
+        val HEADER_SIZE = 8
+        val RECORD_SIZE = 8 + 4 + 4 + 4 + 4 + 1
+        private val BUFFER_SIZE = 8192
+        private val FLUSH_EVERY = 32
+        private val TENDENCIES = PressureTendencyAnalyzer.Tendency.values()
+
+        private fun tendencyCode(name: String?): Int {
+            return TENDENCIES.firstOrNull { it.name == name }?.ordinal ?: -1
+        }
+
+        /**
+         * @return the length of the header and the complete records, 0 if the file is empty or not a log
+         */
+        @Throws(IOException::class)
+        private fun validLength(file: File): Long {
+            if (file.length() < HEADER_SIZE) {
+                return 0
+            }
+            DataInputStream(FileInputStream(file)).use {
+                if (it.readInt() != MAGIC || it.readInt() != VERSION) {
+                    throw IOException("$file is not a sample log version $VERSION")
+                }
+            }
+            return HEADER_SIZE + (file.length() - HEADER_SIZE) / RECORD_SIZE * RECORD_SIZE
+        }
+    }
+}
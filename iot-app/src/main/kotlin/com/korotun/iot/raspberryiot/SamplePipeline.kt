@@ -0,0 +1,50 @@
+package com.korotun.iot.raspberryiot
+
+import com.samgol.driver.bmp180.PressureSensor
+import com.samgol.driver.bmp180.Clock
+import java.io.IOException
+import java.util.concurrent.TimeUnit
+
+/**
+ * Acquisition and upload steps of the station, free of Android framework dependencies so the same
+ * code runs on the device and against a replayed sensor on a plain JVM.
+ */
+class SamplePipeline @JvmOverloads constructor(private val sensor: PressureSensor,
+                                               private val uploader: SampleUploader,
+                                               private val clock: Clock = Clock.SYSTEM,
+                                               val latency: LatencyTracker = LatencyTracker()) {
+
+    private val tendencyAnalyzer = PressureTendencyAnalyzer()
+
+    @Throws(IOException::class)
+    fun acquire(): Bmp180Data {
+        val sample = sensor.readSample()
+
+        // date is the wall clock of the conversion start, not of the end of the reads
+        val start = sample.conversionStartNanos
+        val date = clock.currentTimeMillis() - TimeUnit.NANOSECONDS.toMillis(clock.nanoTime() - start)
+        val data = Bmp180Data(sample.temperature.toInt(), sample.pressure, sample.altitude.toInt(), date)
+        data.startNanos = start
+        data.busDoneUs = micros(sample.busCompleteNanos - start)
+        data.compensatedUs = micros(sample.compensatedNanos - start)
+        latency.bus.record(data.busDoneUs.toLong())
+        latency.compensation.record((data.compensatedUs - data.busDoneUs).toLong())
+
+        tendencyAnalyzer.onSample(data)
+        return data
+    }
+
+    /**
+     * Uploads a stamped copy, [data] is shared with the other bus consumers and stays untouched.
+     */
+    fun upload(data: Bmp180Data) {
+        val stamped = data.copy()
+        stamped.enqueuedUs = micros(clock.nanoTime() - data.startNanos)
+        latency.queue.record((stamped.enqueuedUs - stamped.compensatedUs).toLong())
+        uploader.upload(stamped)
+    }
+
+    private fun micros(nanos: Long): Int {
+        return TimeUnit.NANOSECONDS.toMicros(nanos).toInt()
+    }
+}
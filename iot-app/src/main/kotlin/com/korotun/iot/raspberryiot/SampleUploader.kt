@@ -0,0 +1,117 @@
+package com.korotun.iot.raspberryiot
+
+import android.util.Log
+import com.google.firebase.database.*
+import com.samgol.driver.bmp180.RawSampleBuffer
+import java.util.*
+import java.util.concurrent.TimeUnit
+
+interface SampleUploader {
+    /**
+     * [data] belongs to the uploader, it may stamp it.
+     */
+    fun upload(data: Bmp180Data)
+}
+
+/**
+ * Pushes samples of one station to Firebase, stamps them with the estimated device to server
+ * clock offset and records the store acknowledgement latency.
+ *
+ * Samples go to `bmp180/<stationId>`, the latest sample of every station is kept in the
+ * `stations/<stationId>` index the clients list the fleet from, and the latency summary is
+ * published to `bmp180_latency/<stationId>` every [LATENCY_REPORT_PERIOD] acknowledged samples.
+ *
+ * Raw captures go to `bmp180_raw/<stationId>` as column batches, each naming the checksum of
+ * its calibration under `bmp180_calibration/<stationId>/<checksum>`.
+ */
+class FirebaseUploader(private val stationId: String,
+                       private val latency: LatencyTracker) : SampleUploader, RawSampleUploader {
+
+    private val TAG = FirebaseUploader::class.java.simpleName
+    private val firebase by lazy { FirebaseDatabase.getInstance() }
+    @Volatile private var clockOffset = 0L
+    private var acknowledged = 0
+
+    private val offsetListener = object : ValueEventListener {
+        override fun onDataChange(snapshot: DataSnapshot?) {
+            snapshot?.getValue(Long::class.java)?.let { clockOffset = it }
+        }
+
+        override fun onCancelled(error: DatabaseError?) {
+        }
+    }
+
+    fun start() {
+        firebase.getReference(SERVER_TIME_OFFSET).addValueEventListener(offsetListener)
+    }
+
+    fun stop() {
+        firebase.getReference(SERVER_TIME_OFFSET).removeEventListener(offsetListener)
+    }
+
+    override fun upload(data: Bmp180Data) {
+        data.clockOffset = clockOffset
+        val reference = firebase.getReference(SAMPLES_REFERENCE).child(stationId)
+        firebase.getReference(STATIONS_REFERENCE).child(stationId).setValue(data)
+        reference.push().setValue(data) { error, ref ->
+            if (error == null) {
+                onStored(data)
+            } else {
+                Log.e(TAG, "Can't save $data: ${error.message}")
+            }
+        }
+        Log.d(TAG, "$data  saved into firebase")
+    }
+
+    override fun publishCalibration(calibration: ByteArray, checksum: Long) {
+        val block = calibration.map { it.toInt() and 0xFF }
+        firebase.getReference(CALIBRATION_REFERENCE).child(stationId).child(java.lang.Long.toHexString(checksum))
+                .setValue(block)
+    }
+
+    override fun uploadRaw(buffer: RawSampleBuffer, calibrationChecksum: Long) {
+        val size = buffer.size()
+        val time = ArrayList<Long>(size)
+        val rawTemperature = ArrayList<Int>(size)
+        val rawPressure = ArrayList<Int>(size)
+        val mode = ArrayList<Int>(size)
+        for (row in 0..size - 1) {
+            time.add(buffer.getTime(row))
+            rawTemperature.add(buffer.getRawTemperature(row))
+            rawPressure.add(buffer.getRawPressure(row))
+            mode.add(buffer.getMode(row))
+        }
+        val batch = HashMap<String, Any>()
+        batch.put("calibration", java.lang.Long.toHexString(calibrationChecksum))
+        batch.put("clockOffset", clockOffset)
+        batch.put("time", time)
+        batch.put("ut", rawTemperature)
+        batch.put("up", rawPressure)
+        batch.put("mode", mode)
+        firebase.getReference(RAW_REFERENCE).child(stationId).push().setValue(batch) { error, ref ->
+            if (error != null) {
+                Log.e(TAG, "Can't save $size raw samples: ${error.message}")
+            }
+        }
+    }
+
+    private fun onStored(data: Bmp180Data) {
+        val sinceStart = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - data.startNanos)
+        latency.store.record(sinceStart - data.enqueuedUs)
+        if (++acknowledged % LATENCY_REPORT_PERIOD == 0) {
+            val summary = latency.summary()
+            Log.d(TAG, "latency: $summary")
+            firebase.getReference(LATENCY_REFERENCE).child(stationId).setValue(summary)
+        }
+    }
+
+    companion object {
+        private val SERVER_TIME_OFFSET = ".info/serverTimeOffset"
+        private val SAMPLES_REFERENCE = "bmp180"
+        private val STATIONS_REFERENCE = "stations"
+        private val LATENCY_REFERENCE = "bmp180_latency"
+        private val RAW_REFERENCE = "bmp180_raw"
+        private val CALIBRATION_REFERENCE = "bmp180_calibration"
+        private val LATENCY_REPORT_PERIOD = 6
+    }
+}
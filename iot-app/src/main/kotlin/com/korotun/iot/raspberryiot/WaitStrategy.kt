@@ -0,0 +1,134 @@
+package com.korotun.iot.raspberryiot
+
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicLong
+import java.util.concurrent.locks.LockSupport
+import java.util.concurrent.locks.ReentrantLock
+
+/**
+ * How a [SampleBus] consumer waits for the next sequence. The choice trades the consumer's
+ * wake-up latency against the CPU it burns while idle.
+ */
+interface WaitStrategy {
+
+    /**
+     * Waits for [sequence] to be published. May return early so the consumer can check whether it
+     * was stopped; the caller loops until the returned cursor reaches [sequence].
+     *
+     * @return the highest published sequence
+     */
+    fun waitFor(sequence: Long, cursor: AtomicLong): Long
+
+    /**
+     * Called by the publisher after every publish and when the bus is closed.
+     */
+    fun signal()
+}
+
+/**
+ * Spins on the cursor, lowest latency at the cost of a whole core.
+ */
+class BusySpinWaitStrategy : WaitStrategy {
+
+    override fun waitFor(sequence: Long, cursor: AtomicLong): Long {
+        var available = cursor.get()
+        var spins = SPINS
+        while (available < sequence && spins-- > 0) {
+            available = cursor.get()
+        }
+        return available
+    }
+
+    override fun signal() {
+    }
+
+    companion object {
+        private val SPINS = 10000
+    }
+}
+
+/**
+ * Spins briefly, then yields the CPU to other threads between checks.
+ */
+class YieldingWaitStrategy : WaitStrategy {
+
+    override fun waitFor(sequence: Long, cursor: AtomicLong): Long {
+        var available = cursor.get()
+        var spins = SPINS
+        while (available < sequence && spins-- > 0) {
+            available = cursor.get()
+        }
+        if (available < sequence) {
+            Thread.yield()
+            available = cursor.get()
+        }
+        return available
+    }
+
+    override fun signal() {
+    }
+
+    companion object {
+        private val SPINS = 100
+    }
+}
+
+/**
+ * Sleeps between checks, no publisher side cost and latency bounded by [sleepNanos].
+ */
+class SleepingWaitStrategy @JvmOverloads constructor(private val sleepNanos: Long = TimeUnit.MILLISECONDS.toNanos(1))
+    : WaitStrategy {
+
+    override fun waitFor(sequence: Long, cursor: AtomicLong): Long {
+        val available = cursor.get()
+        if (available >= sequence) {
+            return available
+        }
+        LockSupport.parkNanos(sleepNanos)
+        return cursor.get()
+    }
+
+    override fun signal() {
+    }
+}
+
+/**
+ * Blocks on a condition the publisher signals, no CPU while idle at the cost of a lock per publish.
+ * The right choice for slow consumers such as the uploader.
+ */
+class BlockingWaitStrategy : WaitStrategy {
+
+    private val lock = ReentrantLock()
+    private val published = lock.newCondition()
+
+    override fun waitFor(sequence: Long, cursor: AtomicLong): Long {
+        var available = cursor.get()
+        if (available >= sequence) {
+            return available
+        }
+        lock.lock()
+        try {
+            available = cursor.get()
+            if (available < sequence) {
+                published.await(MAX_BLOCK_MS, TimeUnit.MILLISECONDS)
+                available = cursor.get()
+            }
+        } finally {
+            lock.unlock()
+        }
+        return available
+    }
+
+    override fun signal() {
+        lock.lock()
+        try {
+            published.signalAll()
+        } finally {
+            lock.unlock()
+        }
+    }
+
+    companion object {
+        private val MAX_BLOCK_MS = 100L
+    }
+}
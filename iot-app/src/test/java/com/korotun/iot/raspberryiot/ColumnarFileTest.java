@@ -0,0 +1,110 @@
+package com.korotun.iot.raspberryiot;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class ColumnarFileTest {
+
+    private static final int SAMPLES = 50000;
+    private static final long START = 1484784000000L;
+    private static final long PERIOD_MS = 60000;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void exportAndRangeRead_roundTripAndSkipBlocks() throws Exception {
+        File log = writeLog(folder.newFile("samples.log"));
+        File columns = folder.newFile("samples.scol");
+
+        assertEquals(SAMPLES, ColumnarFile.export(log, columns, Long.MIN_VALUE, Long.MAX_VALUE, 1000));
+        assertTrue("columnar " + columns.length() + " bytes, log " + log.length() + " bytes",
+                columns.length() * 4 < log.length());
+
+        long from = START + 20000 * PERIOD_MS;
+        long to = START + 20999 * PERIOD_MS;
+        ColumnarFile.Reader reader = new ColumnarFile.Reader(new BufferedInputStream(new FileInputStream(columns)), from, to);
+        SampleLog.Record record = new SampleLog.Record();
+        int row = 20000;
+        while (reader.next(record)) {
+            assertEquals(START + row * PERIOD_MS, record.getDate());
+            assertEquals(pressure(row), record.getPressure());
+            assertEquals(temperature(row), record.getTemperature());
+            row++;
+        }
+        reader.close();
+        assertEquals(21000, row);
+        assertTrue("skipped " + reader.getSkippedBlocks(), reader.getSkippedBlocks() >= 48);
+    }
+
+    @Test
+    public void import_restoresDatesPressuresAndTemperaturesOnly() throws Exception {
+        File columns = folder.newFile("samples.scol");
+        ColumnarFile.export(writeLog(folder.newFile("samples.log")), columns);
+
+        File restored = new File(folder.getRoot(), "restored.log");
+        assertEquals(SAMPLES, ColumnarFile.importInto(columns, restored));
+
+        SampleLog.Reader reader = new SampleLog.Reader(restored);
+        SampleLog.Record record = new SampleLog.Record();
+        for (int i = 0; i < SAMPLES; i++) {
+            assertTrue(reader.next(record));
+            assertEquals(START + i * PERIOD_MS, record.getDate());
+            assertEquals(pressure(i), record.getPressure());
+            assertEquals(temperature(i), record.getTemperature());
+            // derived values are not part of the columnar file
+            assertEquals(0, record.getAltitude());
+            assertEquals(0f, record.getPressureRate(), 0f);
+            assertEquals(-1, record.getTendency());
+        }
+        assertFalse(reader.next(record));
+        reader.close();
+    }
+
+    @Test
+    public void import_refusesALogHoldingSamples() throws Exception {
+        File log = writeLog(folder.newFile("samples.log"));
+        File columns = folder.newFile("samples.scol");
+        ColumnarFile.export(log, columns);
+        long length = log.length();
+
+        try {
+            ColumnarFile.importInto(columns, log);
+            fail("imported into a live log");
+        } catch (IOException e) {
+            // expected
+        }
+        assertEquals(length, log.length());
+    }
+
+    private static File writeLog(File file) throws Exception {
+        SampleLog log = new SampleLog(file);
+        for (int i = 0; i < SAMPLES; i++) {
+            Bmp180Data data = new Bmp180Data(temperature(i), pressure(i), 120, START + i * PERIOD_MS);
+            data.setPressureRate(0.5f);
+            data.setTendency("RISING");
+            log.onSample(data);
+        }
+        log.close();
+        return file;
+    }
+
+    private static int pressure(int row) {
+        return 101325 + (int) (300 * Math.sin(row / 500.0)) + row % 3;
+    }
+
+    private static int temperature(int row) {
+        return 20 + (row / 1000) % 5;
+    }
+}
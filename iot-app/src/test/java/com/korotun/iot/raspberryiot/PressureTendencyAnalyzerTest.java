@@ -0,0 +1,75 @@
+package com.korotun.iot.raspberryiot;
+
+import com.samgol.driver.bmp180.PressureTrend;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class PressureTendencyAnalyzerTest {
+
+    private static final long START = 1484784000000L;
+    private static final long MINUTE_MS = 60000;
+
+    @Test
+    public void threeHourChange_isClassifiedByWmoTendency() throws Exception {
+        assertEquals(PressureTendencyAnalyzer.Tendency.STEADY, tendency(0.0));
+        assertEquals(PressureTendencyAnalyzer.Tendency.RISING_SLOWLY, tendency(1.0));
+        assertEquals(PressureTendencyAnalyzer.Tendency.RISING, tendency(2.5));
+        assertEquals(PressureTendencyAnalyzer.Tendency.RISING_QUICKLY, tendency(5.0));
+        assertEquals(PressureTendencyAnalyzer.Tendency.RISING_VERY_RAPIDLY, tendency(8.0));
+        assertEquals(PressureTendencyAnalyzer.Tendency.FALLING_SLOWLY, tendency(-1.0));
+        assertEquals(PressureTendencyAnalyzer.Tendency.FALLING, tendency(-2.5));
+        assertEquals(PressureTendencyAnalyzer.Tendency.FALLING_QUICKLY, tendency(-5.0));
+        assertEquals(PressureTendencyAnalyzer.Tendency.FALLING_VERY_RAPIDLY, tendency(-8.0));
+    }
+
+    @Test
+    public void shortHistory_isUnknown() throws Exception {
+        PressureTendencyAnalyzer analyzer = analyzer();
+        analyzer.add(START, 1000.0);
+        analyzer.add(START + 10 * MINUTE_MS, 1001.0);
+        assertEquals(PressureTendencyAnalyzer.Tendency.UNKNOWN, analyzer.getTendency());
+        assertEquals(null, analyzer.getForecast());
+    }
+
+    @Test
+    public void zambretti_picksLetterFromEachTable() throws Exception {
+        // Z = 127 - 0.12 * 1000 = 7
+        assertEquals('U', PressureTendencyAnalyzer.Companion.zambretti(1000.0, -2.0));
+        // Z = 144 - 0.13 * 1000 = 14
+        assertEquals('N', PressureTendencyAnalyzer.Companion.zambretti(1000.0, 0.0));
+        // Z = 185 - 0.16 * 1000 = 25
+        assertEquals('I', PressureTendencyAnalyzer.Companion.zambretti(1000.0, 2.0));
+        // both ends of the falling table
+        assertEquals('A', PressureTendencyAnalyzer.Companion.zambretti(1050.0, -2.0));
+        assertEquals('Z', PressureTendencyAnalyzer.Companion.zambretti(950.0, -2.0));
+    }
+
+    @Test
+    public void fastSampling_keepsTheWholeWindow() throws Exception {
+        // 1 Hz for 3 hours: +3 hPa over the first 2.5 hours, then flat
+        PressureTendencyAnalyzer analyzer = analyzer();
+        for (int second = 0; second <= 3 * 3600; second++) {
+            double pressure = second < 9000 ? 1000.0 + 3.0 * second / 9000 : 1003.0;
+            analyzer.add(START + second * 1000L, pressure);
+        }
+        assertEquals(PressureTendencyAnalyzer.Tendency.RISING, analyzer.getTendency());
+        assertEquals(3.33 / 3, analyzer.getRate(), 0.01);
+        assertTrue("capacity " + analyzer.getCapacity(), analyzer.getCapacity() <= PressureTrend.MAX_SAMPLES);
+    }
+
+    private static PressureTendencyAnalyzer.Tendency tendency(double change) {
+        PressureTendencyAnalyzer analyzer = analyzer();
+        for (int minute = 0; minute <= 180; minute++) {
+            analyzer.add(START + minute * MINUTE_MS, 1000.0 + change * minute / 180);
+        }
+        assertEquals(change / 3, analyzer.getRate(), 1e-6);
+        return analyzer.getTendency();
+    }
+
+    private static PressureTendencyAnalyzer analyzer() {
+        return new PressureTendencyAnalyzer(PressureTendencyAnalyzer.THREE_HOURS_MS, 256, 0.0);
+    }
+}
@@ -0,0 +1,88 @@
+package com.korotun.iot.raspberryiot;
+
+import com.samgol.driver.bmp180.Bmp180;
+import com.samgol.driver.bmp180.Bmp180Calibration;
+import com.samgol.driver.bmp180.Bmp180Compensation;
+import com.samgol.driver.bmp180.PressureSample;
+import com.samgol.driver.bmp180.RawSampleBuffer;
+import com.samgol.driver.bmp180.ReplayTransport;
+import com.samgol.driver.bmp180.VirtualClock;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+
+public class RawCaptureTest {
+
+    private static final int SAMPLES = 450;
+    private static final int BATCH = 100;
+
+    /**
+     * Replays the datasheet example, UT = 27898 and UP = 23843 in ultra low power mode, which the
+     * datasheet compensates to 15.0 degrees Celsius and 69964 Pa.
+     */
+    @Test
+    public void batchCompensation_matchesDatasheet() throws Exception {
+        VirtualClock clock = new VirtualClock(1484784000000L);
+        ReplayTransport.Trace trace = new ReplayTransport.Trace(new int[]{27898}, new int[]{23843 << 3});
+        Bmp180 bmp180 = new Bmp180(new ReplayTransport(trace, clock, 0), clock);
+        bmp180.setMode(Bmp180.BMP180_ULTRA_LOW_POWER);
+        bmp180.setTemperatureRefreshInterval(5);
+        CollectingUploader uploader = new CollectingUploader();
+        RawCapture capture = new RawCapture(bmp180, uploader, BATCH);
+
+        for (int i = 0; i < SAMPLES; i++) {
+            capture.capture();
+            clock.advance(TimeUnit.MILLISECONDS.toNanos(100));
+        }
+        capture.flush();
+
+        assertEquals(1, uploader.calibrations);
+        assertEquals(SAMPLES, uploader.rows.size());
+
+        Bmp180Compensation compensation = new Bmp180Compensation(Bmp180Calibration.fromBlock(uploader.calibration));
+        RawSampleBuffer all = new RawSampleBuffer(SAMPLES);
+        for (int[] row : uploader.rows) {
+            assertEquals(27898, row[0]);
+            assertEquals(23843, row[1]);
+            assertEquals(Bmp180.BMP180_ULTRA_LOW_POWER, row[2]);
+            all.add(0, row[0], row[1], row[2]);
+        }
+        int[] pressure = new int[SAMPLES];
+        int[] temperature = new int[SAMPLES];
+        all.compensate(compensation, pressure, temperature);
+
+        for (int i = 0; i < SAMPLES; i++) {
+            assertEquals(69964, pressure[i]);
+            assertEquals(150, temperature[i]);
+        }
+
+        PressureSample sample = bmp180.readSample();
+        assertEquals(69964, sample.getPressure());
+        assertEquals(15.0f, sample.getTemperature(), 0f);
+        bmp180.close();
+    }
+
+    private static class CollectingUploader implements RawSampleUploader {
+        int calibrations;
+        byte[] calibration;
+        final List<int[]> rows = new ArrayList<>();
+
+        @Override
+        public void publishCalibration(byte[] calibration, long checksum) {
+            calibrations++;
+            this.calibration = calibration;
+        }
+
+        @Override
+        public void uploadRaw(RawSampleBuffer buffer, long calibrationChecksum) {
+            for (int row = 0; row < buffer.size(); row++) {
+                rows.add(new int[]{buffer.getRawTemperature(row), buffer.getRawPressure(row), buffer.getMode(row)});
+            }
+        }
+    }
+}
@@ -0,0 +1,188 @@
+package com.korotun.iot.raspberryiot;
+
+import com.samgol.driver.bmp180.Bmp180;
+import com.samgol.driver.bmp180.Bmp180SensorDriver;
+import com.samgol.driver.bmp180.ReplayTransport;
+import com.samgol.driver.bmp180.VirtualClock;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Drives the acquisition and upload pipeline, and the framework sensor reads of
+ * {@link Bmp180SensorDriver}, against a replayed BMP180 in virtual time with bus faults injected.
+ * Every fault must surface as a failed read.
+ */
+public class ReplayLoadTest {
+
+    private static final long EPOCH_MS = 1484784000000L;
+    private static final int WARM_UP = 2000;
+    private static final int SAMPLES = 20000;
+    private static final long SAMPLE_PERIOD_NS = TimeUnit.MILLISECONDS.toNanos(100);
+    private static final double FAULT_RATE = 0.001;
+
+    /**
+     * The trace replays the datasheet example, so every sample that makes it through must be
+     * 69964 Pa and 15 degrees Celsius.
+     */
+    @Test
+    public void datasheetTrace_uploadsCorrectSamplesAndReportsFaults() throws Exception {
+        VirtualClock clock = new VirtualClock(EPOCH_MS);
+        ReplayTransport.Trace trace = new ReplayTransport.Trace(new int[]{27898}, new int[]{23843 << 3});
+        ReplayTransport transport = new ReplayTransport(trace, clock, 2);
+        Bmp180 bmp180 = new Bmp180(transport, clock);
+        bmp180.setMode(Bmp180.BMP180_ULTRA_LOW_POWER);
+        transport.setFaultRate(FAULT_RATE);
+        Run run = new Run(bmp180, clock, new CheckingUploader(69964, 15));
+
+        try {
+            run.samples(SAMPLES, null);
+
+            assertTrue("faults " + transport.getFaults(), transport.getFaults() > 0);
+            assertEquals(transport.getFaults(), run.failures);
+            assertEquals(2 * SAMPLES, run.uploaded + run.driverReads + run.failures);
+        } finally {
+            run.driver.close();
+        }
+    }
+
+    /**
+     * Noisy multi-sample trace at ultra high resolution, reports throughput, latency percentiles
+     * and allocation per sample.
+     */
+    @Test
+    public void noisyTrace_sustainsThousandsOfSamplesPerSecond() throws Exception {
+        VirtualClock clock = new VirtualClock(EPOCH_MS);
+        ReplayTransport transport = new ReplayTransport(ReplayTransport.Trace.synthetic(4096, 1), clock, 2);
+        transport.setNoise(4);
+        Bmp180 bmp180 = new Bmp180(transport, clock);
+        bmp180.setMode(Bmp180.BMP180_ULTRA_HIGH_RES);
+        transport.setFaultRate(FAULT_RATE);
+        CheckingUploader uploader = new CheckingUploader(-1, -1);
+        Run run = new Run(bmp180, clock, uploader);
+
+        try {
+            run.samples(WARM_UP, null);
+
+            long[] latencies = new long[SAMPLES];
+            long allocatedBefore = allocatedBytes();
+            long start = System.nanoTime();
+            run.samples(SAMPLES, latencies);
+            long elapsed = System.nanoTime() - start;
+            long allocated = allocatedBefore < 0 ? -1 : allocatedBytes() - allocatedBefore;
+
+            double throughput = SAMPLES * 1e9 / elapsed;
+            Arrays.sort(latencies);
+            System.out.println(String.format(
+                    "replay: %d samples (%d failed reads, %d bus faults) in %.1f ms, %.0f samples/s, "
+                            + "latency p50 %.1f us p99 %.1f us max %.1f us, %s",
+                    SAMPLES, run.failures, transport.getFaults(), elapsed / 1e6, throughput,
+                    latencies[SAMPLES / 2] / 1e3, latencies[SAMPLES * 99 / 100] / 1e3,
+                    latencies[SAMPLES - 1] / 1e3,
+                    allocated < 0 ? "allocation n/a" : (allocated / SAMPLES) + " bytes allocated/sample"));
+
+            assertEquals(transport.getFaults(), run.failures);
+            assertEquals(2 * (WARM_UP + SAMPLES), run.uploaded + run.driverReads + run.failures);
+            assertTrue("pressure spread " + uploader.minPressure + ".." + uploader.maxPressure,
+                    uploader.maxPressure > uploader.minPressure);
+            assertTrue("throughput " + throughput, throughput > 1000);
+        } finally {
+            run.driver.close();
+        }
+    }
+
+    private static long allocatedBytes() {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) bean).getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return -1;
+    }
+
+    /**
+     * Every sample period uploads one sample through the pipeline, and half a period later reads
+     * the barometer values the framework sensor would report.
+     */
+    private static class Run {
+        final VirtualClock clock;
+        final SamplePipeline pipeline;
+        final Bmp180SensorDriver driver;
+        final CheckingUploader checker;
+        int uploaded;
+        int driverReads;
+        int failures;
+
+        Run(Bmp180 bmp180, VirtualClock clock, CheckingUploader uploader) {
+            this.clock = clock;
+            checker = uploader;
+            pipeline = new SamplePipeline(bmp180, uploader, clock);
+            driver = new Bmp180SensorDriver(bmp180);
+        }
+
+        void samples(int count, long[] latencies) {
+            for (int i = 0; i < count; i++) {
+                long start = System.nanoTime();
+                try {
+                    pipeline.upload(pipeline.acquire());
+                    uploaded++;
+                } catch (IOException e) {
+                    failures++;
+                }
+                if (latencies != null) {
+                    latencies[i] = System.nanoTime() - start;
+                }
+                clock.advance(SAMPLE_PERIOD_NS / 2);
+
+                try {
+                    float[] values = driver.readBarometerValues();
+                    checker.check((int) values[0], Math.round(values[1]));
+                    driverReads++;
+                } catch (IOException e) {
+                    failures++;
+                }
+                clock.advance(SAMPLE_PERIOD_NS / 2);
+            }
+        }
+    }
+
+    /**
+     * Checks every uploaded sample and driver reading against the expected values, negative values
+     * disable a check.
+     */
+    private static class CheckingUploader implements SampleUploader {
+        private final int mPressure;
+        private final int mTemperature;
+        int minPressure = Integer.MAX_VALUE;
+        int maxPressure = Integer.MIN_VALUE;
+
+        CheckingUploader(int pressure, int temperature) {
+            mPressure = pressure;
+            mTemperature = temperature;
+        }
+
+        @Override
+        public void upload(Bmp180Data data) {
+            check(data.getPressure(), data.getTemperature());
+        }
+
+        void check(int pressure, int temperature) {
+            if (mPressure >= 0) {
+                assertEquals(mPressure, pressure);
+            }
+            if (mTemperature >= 0) {
+                assertEquals(mTemperature, temperature);
+            }
+            assertTrue("pressure " + pressure, pressure > 30000 && pressure < 110000);
+            minPressure = Math.min(minPressure, pressure);
+            maxPressure = Math.max(maxPressure, pressure);
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package com.korotun.iot.raspberryiot;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class SampleBusTest {
+
+    private static final int SAMPLES = 10000;
+
+    @Test
+    public void fastConsumer_receivesEverySampleInOrder() throws Exception {
+        SampleBus bus = new SampleBus(1024);
+        RecordingHandler handler = new RecordingHandler(SAMPLES, 0);
+        SampleBus.Consumer consumer = bus.subscribe("fast", handler, new YieldingWaitStrategy(),
+                SampleBus.OverflowPolicy.SAMPLE_DOWN, 1000);
+
+        publishPaced(bus, SAMPLES);
+        assertTrue(handler.done.await(10, TimeUnit.SECONDS));
+        bus.close();
+
+        assertEquals(SAMPLES, handler.dates.size());
+        for (int i = 0; i < SAMPLES; i++) {
+            assertEquals(i, (long) handler.dates.get(i));
+        }
+        assertEquals(0, consumer.getSkipped() + consumer.getLost());
+    }
+
+    @Test
+    public void slowConsumer_isSampledDownWithoutStallingPublisher() throws Exception {
+        SampleBus bus = new SampleBus(64);
+        RecordingHandler slow = new RecordingHandler(Integer.MAX_VALUE, 1);
+        SampleBus.Consumer consumer = bus.subscribe("slow", slow, new BlockingWaitStrategy(),
+                SampleBus.OverflowPolicy.SAMPLE_DOWN, 8);
+
+        long start = System.nanoTime();
+        for (int i = 0; i < SAMPLES; i++) {
+            bus.publish(new Bmp180Data(20, 100000, 0, i));
+        }
+        long publishMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        Thread.sleep(100);
+        bus.close();
+
+        assertTrue("publish took " + publishMillis + " ms", publishMillis < 1000);
+        assertFalse(consumer.getDropped());
+        assertTrue(consumer.getDelivered() < SAMPLES);
+        assertTrue(consumer.getSkipped() + consumer.getLost() > 0);
+        List<Long> dates = slow.snapshot();
+        for (int i = 1; i < dates.size(); i++) {
+            assertTrue(dates.get(i) > dates.get(i - 1));
+        }
+    }
+
+    @Test
+    public void laggingConsumer_isDroppedByItsPolicy() throws Exception {
+        SampleBus bus = new SampleBus(64);
+        SampleBus.Consumer dropped = bus.subscribe("slow", new RecordingHandler(0, 5), new SleepingWaitStrategy(),
+                SampleBus.OverflowPolicy.DROP, 4);
+        SampleBus.Consumer kept = bus.subscribe("fast", new RecordingHandler(0, 0), new BusySpinWaitStrategy(),
+                SampleBus.OverflowPolicy.SAMPLE_DOWN, 62);
+
+        publishPaced(bus, 200);
+        for (int i = 0; i < 100 && !dropped.getDropped(); i++) {
+            Thread.sleep(10);
+        }
+
+        assertTrue(dropped.getDropped());
+        assertFalse(kept.getDropped());
+        assertEquals(1, bus.getSubscribers().size());
+        bus.close();
+    }
+
+    private static void publishPaced(SampleBus bus, int count) throws InterruptedException {
+        for (int i = 0; i < count; i++) {
+            bus.publish(new Bmp180Data(20, 100000, 0, i));
+            if (i % 16 == 15) {
+                Thread.sleep(1);
+            }
+        }
+    }
+
+    private static class RecordingHandler implements SampleBus.Handler {
+        final List<Long> dates = Collections.synchronizedList(new ArrayList<Long>());
+        final CountDownLatch done;
+        private final long delayMs;
+
+        RecordingHandler(int expected, long delayMs) {
+            this.done = new CountDownLatch(expected);
+            this.delayMs = delayMs;
+        }
+
+        @Override
+        public void onSample(Bmp180Data data) {
+            dates.add(data.getDate());
+            done.countDown();
+            if (delayMs > 0) {
+                try {
+                    Thread.sleep(delayMs);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+
+        List<Long> snapshot() {
+            synchronized (dates) {
+                return new ArrayList<>(dates);
+            }
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package com.korotun.iot.raspberryiot;
+
+import com.samgol.driver.bmp180.Bmp180;
+import com.samgol.driver.bmp180.ReplayTransport;
+import com.samgol.driver.bmp180.VirtualClock;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+
+public class SamplePipelineTest {
+
+    @Test
+    public void upload_stampsACopyAndLeavesTheSharedSample() throws Exception {
+        VirtualClock clock = new VirtualClock(1484784000000L);
+        Bmp180 bmp180 = new Bmp180(new ReplayTransport(ReplayTransport.Trace.synthetic(16, 1), clock, 0), clock);
+        final Bmp180Data[] uploaded = new Bmp180Data[1];
+        SamplePipeline pipeline = new SamplePipeline(bmp180, new SampleUploader() {
+            @Override
+            public void upload(Bmp180Data data) {
+                data.setClockOffset(250);
+                uploaded[0] = data;
+            }
+        }, clock);
+
+        Bmp180Data shared = pipeline.acquire();
+        clock.advance(TimeUnit.MILLISECONDS.toNanos(3));
+        pipeline.upload(shared);
+
+        assertNotSame(shared, uploaded[0]);
+        assertEquals(0, shared.getEnqueuedUs());
+        assertEquals(0, shared.getClockOffset());
+        assertEquals(shared.getCompensatedUs() + 3000, uploaded[0].getEnqueuedUs());
+        assertEquals(shared.getPressure(), uploaded[0].getPressure());
+        assertEquals(shared.getDate(), uploaded[0].getDate());
+        assertEquals(shared.getTendency(), uploaded[0].getTendency());
+        bmp180.close();
+    }
+}
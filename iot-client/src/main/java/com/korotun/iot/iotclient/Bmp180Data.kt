@@ -8,6 +8,15 @@ class Bmp180Data {
     var pressure: Int = 0
     var altitude: Int = 0
     var date: Long = 0
+    var tendency: String? = null
+    var pressureRate: Float = 0f
+    var forecast: String? = null
+    /** Offset of the device clock to the server clock in ms, [date] + clockOffset is server time. */
+    var clockOffset: Long = 0
+    /** Stage timestamps in microseconds after the conversion start at [date]. */
+    var busDoneUs: Int = 0
+    var compensatedUs: Int = 0
+    var enqueuedUs: Int = 0
 
     constructor() {
     }
@@ -20,7 +29,7 @@ class Bmp180Data {
     }
 
     override fun toString(): String {
-        return "Bmp180Data(temperature=$temperature, pressure=$pressure, altitude=$altitude, date=${Date(date)})"
+        return "Bmp180Data(temperature=$temperature, pressure=$pressure, altitude=$altitude, date=${Date(date)}, tendency=$tendency, pressureRate=$pressureRate, forecast=$forecast, clockOffset=$clockOffset, busDoneUs=$busDoneUs, compensatedUs=$compensatedUs, enqueuedUs=$enqueuedUs)"
     }
 
 }
@@ -0,0 +1,62 @@
+package com.korotun.iot.iotclient
+
+import java.util.*
+
+/**
+ * In-memory [StationDataSource] delivering samples synchronously, for tests and local runs
+ * without a Firebase backend.
+ */
+class FakeStationDataSource : StationDataSource {
+
+    private val stations = LinkedHashMap<String, MutableList<Bmp180Data>>()
+    private val indexListeners = ArrayList<StationDataSource.StationIndexListener>()
+    private val listeners = HashMap<String, MutableList<StationDataSource.StationListener>>()
+
+    /**
+     * Number of live sample subscriptions, over all stations.
+     */
+    val subscriptionCount: Int
+        get() = listeners.values.sumBy { it.size }
+
+    fun emit(stationId: String, data: Bmp180Data) {
+        var samples = stations[stationId]
+        if (samples == null) {
+            samples = ArrayList<Bmp180Data>()
+            stations.put(stationId, samples)
+            ArrayList(indexListeners).forEach { it.onStationAdded(stationId) }
+        }
+        samples.add(data)
+        listeners[stationId]?.let { stationListeners ->
+            ArrayList(stationListeners).forEach { it.onSample(stationId, data) }
+        }
+    }
+
+    override fun listStations(listener: StationDataSource.StationIndexListener): StationDataSource.Subscription {
+        indexListeners.add(listener)
+        ArrayList(stations.keys).forEach { listener.onStationAdded(it) }
+        return object : StationDataSource.Subscription {
+            override fun cancel() {
+                indexListeners.remove(listener)
+            }
+        }
+    }
+
+    override fun subscribe(stationId: String, window: Int,
+                           listener: StationDataSource.StationListener): StationDataSource.Subscription {
+        var stationListeners = listeners[stationId]
+        if (stationListeners == null) {
+            stationListeners = ArrayList<StationDataSource.StationListener>()
+            listeners.put(stationId, stationListeners)
+        }
+        stationListeners.add(listener)
+        stations[stationId]?.let { samples ->
+            samples.subList(Math.max(0, samples.size - window), samples.size).forEach { listener.onSample(stationId, it) }
+        }
+        val registered: MutableList<StationDataSource.StationListener> = stationListeners
+        return object : StationDataSource.Subscription {
+            override fun cancel() {
+                registered.remove(listener)
+            }
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package com.korotun.iot.iotclient
+
+import java.util.*
+
+/**
+ * Merges the date ordered windows of many stations into one feed with a k-way heap merge,
+ * O(limit * log k) for k stations.
+ */
+object FeedMerger {
+
+    class FeedItem(val stationId: String, val data: Bmp180Data)
+
+    private class Cursor(val window: StationWindow, var index: Int) {
+        val date: Long
+            get() = window.get(index).date
+    }
+
+    /**
+     * @return up to [limit] samples over all windows, newest first
+     */
+    fun mergeNewest(windows: List<StationWindow>, limit: Int): List<FeedItem> {
+        val heap = PriorityQueue<Cursor>(Math.max(1, windows.size), Comparator { a, b -> compareValues(b.date, a.date) })
+        windows.filter { it.size > 0 }.forEach { heap.add(Cursor(it, it.size - 1)) }
+        val feed = ArrayList<FeedItem>(limit)
+        while (feed.size < limit && heap.isNotEmpty()) {
+            val cursor = heap.poll()
+            feed.add(FeedItem(cursor.window.stationId, cursor.window.get(cursor.index)))
+            if (cursor.index > 0) {
+                cursor.index--
+                heap.add(cursor)
+            }
+        }
+        return feed
+    }
+}
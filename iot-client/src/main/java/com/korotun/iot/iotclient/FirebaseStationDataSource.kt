@@ -0,0 +1,83 @@
+package com.korotun.iot.iotclient
+
+import com.google.firebase.database.ChildEventListener
+import com.google.firebase.database.DataSnapshot
+import com.google.firebase.database.DatabaseError
+import com.google.firebase.database.FirebaseDatabase
+import com.google.firebase.database.Query
+import com.google.firebase.database.ValueEventListener
+
+/**
+ * Stations are listed from the `stations` index, samples of a station are read from `bmp180/<stationId>`.
+ */
+class FirebaseStationDataSource(private val fireBase: FirebaseDatabase) : StationDataSource {
+
+    override fun listStations(listener: StationDataSource.StationIndexListener): StationDataSource.Subscription {
+        val reference = fireBase.getReference(STATIONS_REFERENCE)
+        val childListener = object : SimpleChildEventListener() {
+            override fun onChildAdded(dataSnapshot: DataSnapshot?, previousChildName: String?) {
+                dataSnapshot?.key?.let { listener.onStationAdded(it) }
+            }
+
+            override fun onChildRemoved(dataSnapshot: DataSnapshot?) {
+                dataSnapshot?.key?.let { listener.onStationRemoved(it) }
+            }
+        }
+        return reference.subscribe(childListener)
+    }
+
+    override fun subscribe(stationId: String, window: Int,
+                           listener: StationDataSource.StationListener): StationDataSource.Subscription {
+        val query = fireBase.getReference(SAMPLES_REFERENCE).child(stationId).orderByChild("date").limitToLast(window)
+        val childListener = object : SimpleChildEventListener() {
+            override fun onChildAdded(dataSnapshot: DataSnapshot?, previousChildName: String?) {
+                dataSnapshot?.getValue(Bmp180Data::class.java)?.let { listener.onSample(stationId, it) }
+            }
+
+            override fun onCancelled(error: DatabaseError?) {
+                listener.onError(stationId, error?.message)
+            }
+        }
+        return query.subscribe(childListener)
+    }
+
+    private open class SimpleChildEventListener : ChildEventListener {
+        override fun onChildAdded(dataSnapshot: DataSnapshot?, previousChildName: String?) {
+        }
+
+        override fun onChildChanged(dataSnapshot: DataSnapshot?, previousChildName: String?) {
+        }
+
+        override fun onChildMoved(dataSnapshot: DataSnapshot?, previousChildName: String?) {
+        }
+
+        override fun onChildRemoved(dataSnapshot: DataSnapshot?) {
+        }
+
+        override fun onCancelled(error: DatabaseError?) {
+        }
+    }
+
+    companion object {
+        val STATIONS_REFERENCE = "stations"
+        val SAMPLES_REFERENCE = "bmp180"
+    }
+}
+
+internal fun Query.subscribe(listener: ChildEventListener): StationDataSource.Subscription {
+    addChildEventListener(listener)
+    return object : StationDataSource.Subscription {
+        override fun cancel() {
+            removeEventListener(listener)
+        }
+    }
+}
+
+internal fun Query.subscribe(listener: ValueEventListener): StationDataSource.Subscription {
+    addValueEventListener(listener)
+    return object : StationDataSource.Subscription {
+        override fun cancel() {
+            removeEventListener(listener)
+        }
+    }
+}
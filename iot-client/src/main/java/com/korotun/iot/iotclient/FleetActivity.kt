@@ -0,0 +1,118 @@
+package com.korotun.iot.iotclient
+
+import android.content.Intent
+import android.os.Bundle
+import android.support.v7.app.AppCompatActivity
+import android.view.View
+import android.view.ViewGroup
+import android.widget.AbsListView
+import android.widget.BaseAdapter
+import android.widget.TextView
+import com.google.firebase.database.FirebaseDatabase
+import kotlinx.android.synthetic.main.activity_fleet.*
+import org.joda.time.DateTime
+import java.util.*
+
+/**
+ * Lists all stations with their latest values and shows the merged live feed of the stations on
+ * screen. Only the visible stations are subscribed to.
+ */
+class FleetActivity : AppCompatActivity() {
+
+    private val dataSource: StationDataSource by lazy { FirebaseStationDataSource(FirebaseDatabase.getInstance()) }
+    private val fleet: FleetSubscriptions by lazy {
+        FleetSubscriptions(dataSource, StationCache(MAX_CACHED_STATIONS, WINDOW_SIZE)) { renderThrottle.request() }
+    }
+    private val renderThrottle = FrameThrottle { render() }
+    private val stationIds = ArrayList<String>()
+    private val adapter = StationAdapter()
+    private var indexSubscription: StationDataSource.Subscription? = null
+
+    private val indexListener = object : StationDataSource.StationIndexListener {
+        override fun onStationAdded(stationId: String) {
+            stationIds.add(stationId)
+            adapter.notifyDataSetChanged()
+        }
+
+        override fun onStationRemoved(stationId: String) {
+            stationIds.remove(stationId)
+            adapter.notifyDataSetChanged()
+        }
+    }
+
+    override fun onCreate(savedInstanceState: Bundle?) {
+        super.onCreate(savedInstanceState)
+        setContentView(R.layout.activity_fleet)
+        lsv_stations.adapter = adapter
+        lsv_stations.setOnItemClickListener { parent, view, position, id -> openStation(stationIds[position]) }
+        lsv_stations.setOnScrollListener(object : AbsListView.OnScrollListener {
+            override fun onScroll(view: AbsListView?, firstVisibleItem: Int, visibleItemCount: Int, totalItemCount: Int) {
+                updateVisibleStations(firstVisibleItem, visibleItemCount)
+            }
+
+            override fun onScrollStateChanged(view: AbsListView?, scrollState: Int) {
+            }
+        })
+    }
+
+    override fun onStart() {
+        super.onStart()
+        indexSubscription = dataSource.listStations(indexListener)
+    }
+
+    override fun onStop() {
+        super.onStop()
+        indexSubscription?.cancel()
+        indexSubscription = null
+        stationIds.clear()
+        adapter.notifyDataSetChanged()
+        fleet.cancel()
+        renderThrottle.cancel()
+    }
+
+    private fun updateVisibleStations(first: Int, count: Int) {
+        val end = Math.min(stationIds.size, first + count)
+        fleet.setVisibleStations(if (first < end) stationIds.subList(first, end) else emptyList<String>())
+    }
+
+    private fun render() {
+        adapter.notifyDataSetChanged()
+        txv_feed.text = fleet.mergedFeed(FEED_SIZE).joinToString("\n") { summary(it.stationId, it.data) }
+    }
+
+    private fun summary(stationId: String, data: Bmp180Data): String {
+        val dateTime = DateTime(data.date)
+        val time = "${dateTime.hourOfDay}:${dateTime.minuteOfHour.toString().padStart(2, '0')} $stationId"
+        return getString(R.string.station_summary, time,
+                data.pressure.div(MainActivity.PASCAL_TO_MM_HG_CONST).toInt(), data.temperature)
+    }
+
+    private fun openStation(stationId: String) {
+        startActivity(Intent(this, MainActivity::class.java).putExtra(MainActivity.EXTRA_STATION_ID, stationId))
+    }
+
+    private inner class StationAdapter : BaseAdapter() {
+
+        override fun getCount(): Int = stationIds.size
+
+        override fun getItem(position: Int): Any = stationIds[position]
+
+        override fun getItemId(position: Int): Long = position.toLong()
+
+        override fun getView(position: Int, convertView: View?, parent: ViewGroup): View {
+            val view = convertView ?: layoutInflater.inflate(android.R.layout.simple_list_item_2, parent, false)
+            val stationId = stationIds[position]
+            val latest = fleet.cache.latest(stationId)
+            (view.findViewById(android.R.id.text1) as TextView).text = stationId
+            (view.findViewById(android.R.id.text2) as TextView).text =
+                    if (latest == null) getString(R.string.station_no_data) else summary(stationId, latest)
+            return view
+        }
+    }
+
+    companion object {
+        private val MAX_CACHED_STATIONS = 500
+        private val WINDOW_SIZE = 20
+        private val FEED_SIZE = 5
+    }
+}
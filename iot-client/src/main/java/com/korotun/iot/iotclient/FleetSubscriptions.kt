@@ -0,0 +1,59 @@
+package com.korotun.iot.iotclient
+
+import java.util.*
+
+/**
+ * Keeps exactly one sample listener per visible station. Samples go to the shared [cache], and
+ * [onChanged] is called after each of them so the UI can render the fleet.
+ */
+class FleetSubscriptions(private val dataSource: StationDataSource,
+                         val cache: StationCache,
+                         private val onChanged: () -> Unit) {
+
+    private val subscriptions = HashMap<String, StationDataSource.Subscription>()
+
+    private val listener = object : StationDataSource.StationListener {
+        override fun onSample(stationId: String, data: Bmp180Data) {
+            if (cache.add(stationId, data)) {
+                onChanged()
+            }
+        }
+
+        override fun onError(stationId: String, message: String?) {
+            subscriptions.remove(stationId)
+        }
+    }
+
+    val visibleStations: Set<String>
+        get() = subscriptions.keys
+
+    /**
+     * Subscribes the stations that became visible and cancels the ones that are no longer visible.
+     */
+    fun setVisibleStations(stationIds: Collection<String>) {
+        val visible = HashSet(stationIds)
+        val iterator = subscriptions.entries.iterator()
+        while (iterator.hasNext()) {
+            val entry = iterator.next()
+            if (entry.key !in visible) {
+                entry.value.cancel()
+                iterator.remove()
+            }
+        }
+        visible.filter { it !in subscriptions }.forEach {
+            subscriptions.put(it, dataSource.subscribe(it, cache.windowSize, listener))
+        }
+    }
+
+    /**
+     * @return up to [limit] recent samples of the visible stations, newest first
+     */
+    fun mergedFeed(limit: Int): List<FeedMerger.FeedItem> {
+        return FeedMerger.mergeNewest(cache.windows(subscriptions.keys), limit)
+    }
+
+    fun cancel() {
+        subscriptions.values.forEach { it.cancel() }
+        subscriptions.clear()
+    }
+}
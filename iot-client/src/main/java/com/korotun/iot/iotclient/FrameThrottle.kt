@@ -0,0 +1,37 @@
+package com.korotun.iot.iotclient
+
+import android.view.Choreographer
+
+/**
+ * Coalesces bursts of [request] calls into at most one [action] per display frame, run on the
+ * thread the throttle is used from, which must have a looper. Requests made while an action is
+ * pending are dropped, the action reads the latest state.
+ */
+class FrameThrottle(private val action: () -> Unit) {
+
+    private var pending = false
+    private val frameCallback = Choreographer.FrameCallback {
+        pending = false
+        action()
+    }
+
+    /**
+     * Number of requests folded into an already pending action.
+     */
+    var coalesced = 0L
+        private set
+
+    fun request() {
+        if (pending) {
+            coalesced++
+            return
+        }
+        pending = true
+        Choreographer.getInstance().postFrameCallback(frameCallback)
+    }
+
+    fun cancel() {
+        Choreographer.getInstance().removeFrameCallback(frameCallback)
+        pending = false
+    }
+}
@@ -1,29 +1,73 @@
 package com.korotun.iot.iotclient
 
+import android.content.Intent
 import android.os.Bundle
 import android.os.Handler
+import android.util.Log
+import android.preference.PreferenceManager
 import android.support.v7.app.AppCompatActivity
+import android.view.Menu
+import android.view.MenuItem
 import android.view.View.GONE
 import android.view.View.VISIBLE
 import com.google.firebase.database.*
+import com.samgol.driver.bmp180.LatencyHistogram
 import kotlinx.android.synthetic.main.main_content.*
 import kotlinx.android.synthetic.main.view_error.*
 import kotlinx.android.synthetic.main.view_loading.*
 import net.danlew.android.joda.JodaTimeAndroid
 import org.joda.time.DateTime
 
-class MainActivity : AppCompatActivity(), ChildEventListener {
+class MainActivity : AppCompatActivity(), StationDataSource.StationListener {
 
-    private val bmp180Reference: DatabaseReference by lazy { fireBase.getReference(CONNECTION_DATA_REFERENCE) }
+    private var stationId: String = ""
     private val connectionReference: DatabaseReference by lazy { fireBase.getReference(SENSOR_DATA_REFERENCE) }
-    private var valueListener: ValueEventListener? = null
-    private var handler: Handler? = null
-    private val delayCallBack by lazy { Runnable { checkFirebaseConnection() } }
+    private val handler = Handler()
+    private val delayCallBack = Runnable { checkFirebaseConnection() }
     private val fireBase by lazy { FirebaseDatabase.getInstance() }
+    private val dataSource: StationDataSource by lazy { FirebaseStationDataSource(fireBase) }
+    private val subscriptions = SubscriptionManager()
+    private val renderThrottle = FrameThrottle { render() }
+    private val offsetReference: DatabaseReference by lazy { fireBase.getReference(SERVER_TIME_OFFSET_REFERENCE) }
+    @Volatile private var clockOffset = 0L
+    private val offsetListener = object : ValueEventListener {
+        override fun onDataChange(snapshot: DataSnapshot?) {
+            snapshot?.getValue(Long::class.java)?.let { clockOffset = it }
+        }
+
+        override fun onCancelled(error: DatabaseError?) {
+        }
+    }
+    private val connectionListener = object : ValueEventListener {
+        override fun onCancelled(p0: DatabaseError?) {
+
+        }
+
+        override fun onDataChange(snapShot: DataSnapshot?) {
+            connected = snapShot?.getValue(Boolean::class.java) ?: false
+            showConnectionState()
+        }
+    }
+    private var connected: Boolean? = null
+    private var hasContent = false
+    private var latestData: Bmp180Data? = null
+    private var latestReceivedNanos = 0L
+    private val networkLatency = LatencyHistogram("store+network")
+    private val renderLatency = LatencyHistogram("render")
 
     override fun onCreate(savedInstanceState: Bundle?) {
         super.onCreate(savedInstanceState)
         JodaTimeAndroid.init(this)
+        val preferences = PreferenceManager.getDefaultSharedPreferences(this)
+        val selectedStation = intent.getStringExtra(EXTRA_STATION_ID) ?: preferences.getString(PREF_STATION_ID, null)
+        if (selectedStation == null) {
+            openFleet()
+            finish()
+            return
+        }
+        stationId = selectedStation
+        preferences.edit().putString(PREF_STATION_ID, selectedStation).apply()
+        title = selectedStation
         setContentView(R.layout.activity_main)
         error_view.setOnClickListener { checkFirebaseConnectionWithDelay() }
     }
@@ -35,28 +79,45 @@ class MainActivity : AppCompatActivity(), ChildEventListener {
     }
 
 
+    override fun onCreateOptionsMenu(menu: Menu): Boolean {
+        menuInflater.inflate(R.menu.menu_main, menu)
+        return true
+    }
+
+    override fun onOptionsItemSelected(item: MenuItem): Boolean {
+        if (item.itemId == R.id.action_stations) {
+            openFleet()
+            return true
+        }
+        return super.onOptionsItemSelected(item)
+    }
+
+    private fun openFleet() {
+        startActivity(Intent(this, FleetActivity::class.java))
+    }
+
     private fun checkFirebaseConnectionWithDelay() {
         showLoading()
-        handler = Handler()
-        handler?.postDelayed(delayCallBack, 2000)
+        handler.removeCallbacks(delayCallBack)
+        handler.postDelayed(delayCallBack, 2000)
     }
 
 
     private fun checkFirebaseConnection() {
-        valueListener = object : ValueEventListener {
-            override fun onCancelled(p0: DatabaseError?) {
-
-            }
-
-            override fun onDataChange(snapShot: DataSnapshot?) {
-                val connected = snapShot?.getValue(Boolean::class.java)!!
-                if (connected) {
-                } else {
-                    showError(getString(R.string.connection_error))
-                }
-            }
+        val attached = subscriptions.acquire(SENSOR_DATA_REFERENCE, this) { connectionReference.subscribe(connectionListener) }
+        if (!attached) {
+            // the listener only fires on changes once attached, a retry re-evaluates the known state
+            showConnectionState()
+        }
+        // the station subscription is released after an error, a retry subscribes again
+        registerFirebaseListener()
+    }
+
+    private fun showConnectionState() {
+        when (connected) {
+            false -> showError(getString(R.string.connection_error))
+            true -> if (hasContent) showContent()
         }
-        connectionReference.addValueEventListener(valueListener)
     }
 
     private fun showLoading() {
@@ -79,26 +140,54 @@ class MainActivity : AppCompatActivity(), ChildEventListener {
     }
 
     private fun registerFirebaseListener() {
-        bmp180Reference.orderByChild("date").limitToLast(1).addChildEventListener(this)
-    }
-
-    override fun onChildMoved(dataSnapshot: DataSnapshot?, p1: String?) {
+        subscriptions.acquire(SERVER_TIME_OFFSET_REFERENCE, this) { offsetReference.subscribe(offsetListener) }
+        subscriptions.acquire("$CONNECTION_DATA_REFERENCE/$stationId", this) { dataSource.subscribe(stationId, 1, this) }
+    }
+
+    /**
+     * Samples only replace the pending one, the UI is updated at most once per frame with the latest.
+     */
+    override fun onSample(stationId: String, data: Bmp180Data) {
+        val receivedNanos = System.nanoTime()
+        recordNetworkLatency(data)
+        if (latestData == null) {
+            // render latency is measured from the oldest sample folded into the frame
+            latestReceivedNanos = receivedNanos
+        }
+        latestData = data
+        renderThrottle.request()
     }
 
-    override fun onChildChanged(dataSnapshot: DataSnapshot?, p1: String?) {
+    override fun onError(stationId: String, message: String?) {
+        subscriptions.release("$CONNECTION_DATA_REFERENCE/$stationId", this)
+        hasContent = false
+        showError(message)
     }
 
-    override fun onChildAdded(dataSnapshot: DataSnapshot?, p1: String?) {
+    private fun render() {
+        val data = latestData ?: return
         showContent()
-        fillUI(dataSnapshot?.getValue(Bmp180Data::class.java))
+        fillUI(data)
+        hasContent = true
+        renderLatency.record((System.nanoTime() - latestReceivedNanos) / 1000)
+        latestData = null
+        if (renderLatency.count % LATENCY_REPORT_PERIOD == 0L) {
+            logLatency()
+        }
     }
 
-
-    override fun onChildRemoved(dataSnapshot: DataSnapshot?) {
+    private fun logLatency() {
+        Log.d(TAG, "latency: $networkLatency; $renderLatency, ${renderThrottle.coalesced} samples coalesced")
     }
 
-    override fun onCancelled(error: DatabaseError?) {
-        showError(error?.message)
+    /**
+     * Both clocks are mapped to server time through their Firebase offsets, so the store and
+     * network hop is measured from the moment the device enqueued the sample.
+     */
+    private fun recordNetworkLatency(data: Bmp180Data) {
+        val enqueuedServerMs = data.date + data.clockOffset + data.enqueuedUs / 1000
+        val receivedServerMs = System.currentTimeMillis() + clockOffset
+        networkLatency.record((receivedServerMs - enqueuedServerMs) * 1000)
     }
 
 
@@ -121,15 +210,23 @@ class MainActivity : AppCompatActivity(), ChildEventListener {
     }
 
     private fun unregisterListeners() {
-        valueListener?.let { connectionReference.removeEventListener(it) }
-        bmp180Reference.removeEventListener(this)
-        handler?.removeCallbacks { delayCallBack }
+        subscriptions.releaseAll(this)
+        connected = null
+        handler.removeCallbacks(delayCallBack)
+        renderThrottle.cancel()
+        latestData = null
+        logLatency()
     }
 
     companion object {
 
+        private val TAG = MainActivity::class.java.simpleName
         private val SENSOR_DATA_REFERENCE = ".info/connected"
+        private val SERVER_TIME_OFFSET_REFERENCE = ".info/serverTimeOffset"
         private val CONNECTION_DATA_REFERENCE = "bmp180"
-        private val PASCAL_TO_MM_HG_CONST = 133.322368
+        private val PREF_STATION_ID = "station_id"
+        val EXTRA_STATION_ID = "station_id"
+        val PASCAL_TO_MM_HG_CONST = 133.322368
+        private val LATENCY_REPORT_PERIOD = 30
     }
 }
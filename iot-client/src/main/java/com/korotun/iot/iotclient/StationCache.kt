@@ -0,0 +1,102 @@
+package com.korotun.iot.iotclient
+
+import java.util.*
+
+/**
+ * Bounded cache of the recent samples of each station. At most [maxStations] windows are kept,
+ * the least recently used station is evicted first. Not thread safe, used from the main thread.
+ */
+class StationCache(private val maxStations: Int, val windowSize: Int) {
+
+    private val windows = object : LinkedHashMap<String, StationWindow>(16, 0.75f, true) {
+        override fun removeEldestEntry(eldest: MutableMap.MutableEntry<String, StationWindow>?): Boolean {
+            return size > maxStations
+        }
+    }
+
+    /**
+     * @return false if the sample was already cached or is older than the whole window
+     */
+    fun add(stationId: String, data: Bmp180Data): Boolean {
+        var window = windows[stationId]
+        if (window == null) {
+            window = StationWindow(stationId, windowSize)
+            windows.put(stationId, window)
+        }
+        return window.add(data)
+    }
+
+    fun latest(stationId: String): Bmp180Data? {
+        return windows[stationId]?.latest()
+    }
+
+    fun window(stationId: String): StationWindow? {
+        return windows[stationId]
+    }
+
+    fun windows(stationIds: Collection<String>): List<StationWindow> {
+        return stationIds.mapNotNull { windows[it] }
+    }
+
+    val size: Int
+        get() = windows.size
+}
+
+/**
+ * Ring of the most recent samples of a station, ordered by date, at most one sample per date.
+ */
+class StationWindow(val stationId: String, capacity: Int) {
+
+    private val samples = arrayOfNulls<Bmp180Data>(capacity)
+    private var head = 0
+    var size = 0
+        private set
+
+    /**
+     * @return false if a sample of the same date is already in the window, e.g. replayed after the
+     * station was subscribed again, or the sample is older than the whole window
+     */
+    fun add(data: Bmp180Data): Boolean {
+        if (contains(data.date)) {
+            return false
+        }
+        if (size == samples.size) {
+            if (data.date < get(0).date) {
+                return false
+            }
+            head = (head + 1) % samples.size
+            size--
+        }
+        // samples mostly arrive in order, shift the rare late one into place
+        var position = size
+        while (position > 0 && get(position - 1).date > data.date) {
+            samples[(head + position) % samples.size] = get(position - 1)
+            position--
+        }
+        samples[(head + position) % samples.size] = data
+        size++
+        return true
+    }
+
+    private fun contains(date: Long): Boolean {
+        var index = size - 1
+        while (index >= 0 && get(index).date >= date) {
+            if (get(index).date == date) {
+                return true
+            }
+            index--
+        }
+        return false
+    }
+
+    /**
+     * @param index 0 is the oldest sample
+     */
+    fun get(index: Int): Bmp180Data {
+        return samples[(head + index) % samples.size]!!
+    }
+
+    fun latest(): Bmp180Data? {
+        return if (size == 0) null else get(size - 1)
+    }
+}
@@ -0,0 +1,32 @@
+package com.korotun.iot.iotclient
+
+/**
+ * Source of station samples. Implemented on top of Firebase, and by [FakeStationDataSource] for
+ * tests. Callbacks are delivered on the main thread.
+ */
+interface StationDataSource {
+
+    interface Subscription {
+        fun cancel()
+    }
+
+    interface StationIndexListener {
+        fun onStationAdded(stationId: String)
+        fun onStationRemoved(stationId: String)
+    }
+
+    interface StationListener {
+        fun onSample(stationId: String, data: Bmp180Data)
+        fun onError(stationId: String, message: String?)
+    }
+
+    /**
+     * Listens for stations appearing in and disappearing from the fleet index.
+     */
+    fun listStations(listener: StationIndexListener): Subscription
+
+    /**
+     * Listens for samples of one station, starting with its [window] most recent ones.
+     */
+    fun subscribe(stationId: String, window: Int, listener: StationListener): Subscription
+}
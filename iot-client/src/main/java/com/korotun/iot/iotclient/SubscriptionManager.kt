@@ -0,0 +1,61 @@
+package com.korotun.iot.iotclient
+
+import java.util.*
+
+/**
+ * Reference counts listeners by key, so every key is attached to the backend at most once however
+ * often it is acquired. Acquiring a key again from the same owner is a no-op, which makes it safe to
+ * call from retries and repeated lifecycle callbacks; the backend listener is detached when the last
+ * owner releases it.
+ */
+class SubscriptionManager {
+
+    private class Entry(val subscription: StationDataSource.Subscription) {
+        val owners = HashSet<Any>()
+    }
+
+    private val entries = HashMap<String, Entry>()
+
+    /**
+     * Number of keys attached to the backend.
+     */
+    val size: Int
+        get() = entries.size
+
+    /**
+     * Adds [owner] to the holders of [key], calling [attach] only if the key is not attached yet.
+     *
+     * @return true if the backend listener was attached by this call
+     */
+    fun acquire(key: String, owner: Any, attach: () -> StationDataSource.Subscription): Boolean {
+        val entry = entries[key]
+        if (entry != null) {
+            entry.owners.add(owner)
+            return false
+        }
+        val created = Entry(attach())
+        created.owners.add(owner)
+        entries.put(key, created)
+        return true
+    }
+
+    /**
+     * Removes [owner] from the holders of [key] and detaches the key once nobody holds it.
+     */
+    fun release(key: String, owner: Any) {
+        val entry = entries[key] ?: return
+        if (entry.owners.remove(owner) && entry.owners.isEmpty()) {
+            entries.remove(key)
+            entry.subscription.cancel()
+        }
+    }
+
+    /**
+     * Releases every key held by [owner].
+     */
+    fun releaseAll(owner: Any) {
+        entries.keys.filter { entries[it]?.owners?.contains(owner) ?: false }.forEach { release(it, owner) }
+    }
+
+    fun refCount(key: String): Int = entries[key]?.owners?.size ?: 0
+}
@@ -0,0 +1,78 @@
+package com.korotun.iot.iotclient;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import kotlin.Unit;
+import kotlin.jvm.functions.Function0;
+
+import static org.junit.Assert.assertEquals;
+
+public class FleetSubscriptionsTest {
+
+    private static final Function0<Unit> NO_OP = new Function0<Unit>() {
+        @Override
+        public Unit invoke() {
+            return Unit.INSTANCE;
+        }
+    };
+
+    @Test
+    public void visibleStations_areSubscribedOnce() throws Exception {
+        FakeStationDataSource dataSource = new FakeStationDataSource();
+        FleetSubscriptions fleet = new FleetSubscriptions(dataSource, new StationCache(10, 5), NO_OP);
+
+        fleet.setVisibleStations(Arrays.asList("a", "b"));
+        fleet.setVisibleStations(Arrays.asList("a", "b"));
+        assertEquals(2, dataSource.getSubscriptionCount());
+
+        fleet.setVisibleStations(Arrays.asList("b", "c"));
+        assertEquals(2, dataSource.getSubscriptionCount());
+
+        fleet.setVisibleStations(Collections.<String>emptyList());
+        assertEquals(0, dataSource.getSubscriptionCount());
+    }
+
+    @Test
+    public void mergedFeed_isNewestFirstOverVisibleStations() throws Exception {
+        FakeStationDataSource dataSource = new FakeStationDataSource();
+        FleetSubscriptions fleet = new FleetSubscriptions(dataSource, new StationCache(10, 5), NO_OP);
+        fleet.setVisibleStations(Arrays.asList("a", "b"));
+
+        dataSource.emit("a", new Bmp180Data(20, 100000, 0, 1000));
+        dataSource.emit("b", new Bmp180Data(20, 100001, 0, 1500));
+        dataSource.emit("a", new Bmp180Data(20, 100002, 0, 2000));
+        dataSource.emit("c", new Bmp180Data(20, 100003, 0, 3000));
+
+        List<FeedMerger.FeedItem> feed = fleet.mergedFeed(10);
+        assertEquals(3, feed.size());
+        assertEquals(2000, feed.get(0).getData().getDate());
+        assertEquals("b", feed.get(1).getStationId());
+        assertEquals(1000, feed.get(2).getData().getDate());
+    }
+
+    @Test
+    public void resubscribedStation_replayDoesNotDuplicateSamples() throws Exception {
+        FakeStationDataSource dataSource = new FakeStationDataSource();
+        FleetSubscriptions fleet = new FleetSubscriptions(dataSource, new StationCache(10, 5), NO_OP);
+        fleet.setVisibleStations(Collections.singletonList("a"));
+        dataSource.emit("a", new Bmp180Data(20, 100000, 0, 1000));
+        dataSource.emit("a", new Bmp180Data(20, 100001, 0, 2000));
+        dataSource.emit("a", new Bmp180Data(20, 100002, 0, 3000));
+
+        fleet.setVisibleStations(Collections.<String>emptyList());
+        dataSource.emit("a", new Bmp180Data(20, 100003, 0, 4000));
+        fleet.setVisibleStations(Collections.singletonList("a"));
+
+        assertEquals(1, dataSource.getSubscriptionCount());
+        assertEquals(4, fleet.getCache().window("a").getSize());
+        List<FeedMerger.FeedItem> feed = fleet.mergedFeed(10);
+        assertEquals(4, feed.size());
+        for (int i = 0; i < feed.size(); i++) {
+            assertEquals(4000 - i * 1000, feed.get(i).getData().getDate());
+        }
+    }
+}
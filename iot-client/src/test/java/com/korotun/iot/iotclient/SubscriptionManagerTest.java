@@ -0,0 +1,70 @@
+package com.korotun.iot.iotclient;
+
+import org.junit.Test;
+
+import kotlin.jvm.functions.Function0;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class SubscriptionManagerTest {
+
+    private static class CountingAttach implements Function0<StationDataSource.Subscription> {
+        int attached;
+        int cancelled;
+
+        @Override
+        public StationDataSource.Subscription invoke() {
+            attached++;
+            return new StationDataSource.Subscription() {
+                @Override
+                public void cancel() {
+                    cancelled++;
+                }
+            };
+        }
+    }
+
+    @Test
+    public void repeatedAcquire_attachesOnce() throws Exception {
+        SubscriptionManager manager = new SubscriptionManager();
+        CountingAttach attach = new CountingAttach();
+        Object owner = new Object();
+
+        assertTrue(manager.acquire("connected", owner, attach));
+        assertFalse(manager.acquire("connected", owner, attach));
+        assertFalse(manager.acquire("connected", owner, attach));
+
+        assertEquals(1, attach.attached);
+        assertEquals(1, manager.refCount("connected"));
+
+        manager.release("connected", owner);
+        assertEquals(1, attach.cancelled);
+        assertEquals(0, manager.getSize());
+    }
+
+    @Test
+    public void sharedKey_isDetachedByLastOwner() throws Exception {
+        SubscriptionManager manager = new SubscriptionManager();
+        CountingAttach attach = new CountingAttach();
+        Object first = new Object();
+        Object second = new Object();
+
+        manager.acquire("bmp180/a", first, attach);
+        manager.acquire("bmp180/a", second, attach);
+        manager.acquire("offset", first, attach);
+        assertEquals(2, attach.attached);
+
+        manager.releaseAll(first);
+        assertEquals(1, attach.cancelled);
+        assertEquals(1, manager.refCount("bmp180/a"));
+
+        manager.release("bmp180/a", first);
+        assertEquals(1, attach.cancelled);
+
+        manager.releaseAll(second);
+        assertEquals(2, attach.cancelled);
+        assertEquals(0, manager.getSize());
+    }
+}